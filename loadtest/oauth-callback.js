@@ -0,0 +1,63 @@
+// OAuth callback load test: BLOCKING vs ASYNC (sso.oauth.callback-mode).
+//
+// 1. Start a slow fake IdP (300 ms per call, like our real one on a bad day):
+//      docker run --rm -p 8089:8080 -v $PWD/loadtest/wiremock:/home/wiremock wiremock/wiremock:3.9.1
+// 2. In /admin/sso-settings enable OAuth with
+//      Token URL    = http://localhost:8089/oauth/token
+//      UserInfo URL = http://localhost:8089/oauth/userinfo
+// 3. Run the app once per mode, e.g.
+//      ./mvnw spring-boot:run -Dspring-boot.run.arguments=--sso.oauth.callback-mode=BLOCKING
+//      ./mvnw spring-boot:run -Dspring-boot.run.arguments=--sso.oauth.callback-mode=ASYNC
+//    (raise sso.http.max-connections-per-host so the pool is not the bottleneck)
+// 4. k6 run loadtest/oauth-callback.js
+//
+// Compare callback throughput/p95 and, more importantly, the "login_page" p95: in BLOCKING mode
+// the callbacks pin Tomcat's 200 workers and GET /login queues behind them; in ASYNC mode it doesn't.
+//
+// Each callback holds a BLOCKING worker for two IdP calls (~0.6 s), so BLOCKING saturates above
+// threads / 0.6 s callbacks per second. On a small box, scale both down instead of the 1000/s default:
+//      --server.tomcat.threads.max=20 and CALLBACK_RATE=40 (needs ~24 workers)
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE = __ENV.BASE_URL || 'http://localhost:9099';
+
+export const options = {
+  scenarios: {
+    callbacks: {
+      executor: 'constant-arrival-rate',
+      exec: 'callback',
+      rate: Number(__ENV.CALLBACK_RATE || 1000),
+      timeUnit: '1s',
+      duration: __ENV.DURATION || '60s',
+      preAllocatedVUs: 2000,
+      maxVUs: 5000,
+    },
+    login_page: {
+      executor: 'constant-arrival-rate',
+      exec: 'loginPage',
+      rate: 50,
+      timeUnit: '1s',
+      duration: __ENV.DURATION || '60s',
+      preAllocatedVUs: 50,
+    },
+  },
+  thresholds: {
+    'http_req_duration{scenario:login_page}': ['p(95)<200'],
+  },
+};
+
+// The callback only accepts the state of a login this VU started (its SSO_OAUTH_STATE cookie is kept in
+// the VU's cookie jar), so each iteration starts one first; only the callback is checked against thresholds
+export function callback() {
+  const login = http.get(`${BASE}/sso/oauth/login`, { redirects: 0, tags: { name: 'oauth_login' } });
+  const state = (login.headers['Location'] || '').match(/[?&]state=([^&]+)/);
+  const res = http.get(`${BASE}/sso/oauth/callback?code=load-${__VU}-${__ITER}&state=${state ? state[1] : ''}`,
+    { redirects: 0, tags: { name: 'oauth_callback' } });
+  check(res, { 'callback signed in': (r) => r.status === 200 && r.cookies['JSESSIONID'] !== undefined });
+}
+
+export function loginPage() {
+  const res = http.get(`${BASE}/login`);
+  check(res, { 'login 200': (r) => r.status === 200 });
+}
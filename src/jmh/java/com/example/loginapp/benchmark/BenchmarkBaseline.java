@@ -0,0 +1,130 @@
+package com.example.loginapp.benchmark;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the benchmarks with the GC profiler and compares them against a recorded baseline.
+ * <pre>
+ *   # record a baseline (e.g. on the release branch)
+ *   ./mvnw -Pjmh test-compile exec:exec -Djmh.main=com.example.loginapp.benchmark.BenchmarkBaseline -Djmh.args="--record"
+ *   # compare; exits 1 if any benchmark regressed by more than the threshold
+ *   ./mvnw -Pjmh test-compile exec:exec -Djmh.main=com.example.loginapp.benchmark.BenchmarkBaseline -Djmh.args="--threshold 0.10"
+ * </pre>
+ * Options: {@code --record}, {@code --baseline <file>} (default src/jmh/baseline.json),
+ * {@code --threshold <fraction>} (default 0.10); any other argument is a benchmark include regex.
+ * Both the primary score and the normalized allocation rate (bytes/op) are compared.
+ */
+public final class BenchmarkBaseline {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private BenchmarkBaseline() {}
+
+    public static void main(String[] args) throws Exception {
+        boolean record = false;
+        Path baselineFile = Path.of("src/jmh/baseline.json");
+        double threshold = 0.10;
+        List<String> includes = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--record" -> record = true;
+                case "--baseline" -> baselineFile = Path.of(args[++i]);
+                case "--threshold" -> threshold = Double.parseDouble(args[++i]);
+                default -> includes.add(args[i]);
+            }
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class);
+        if (includes.isEmpty()) {
+            options.include(BenchmarkBaseline.class.getPackageName() + "\\..*Benchmark\\..*");
+        } else {
+            includes.forEach(options::include);
+        }
+
+        Map<String, JSONObject> current = summarize(new Runner(options.build()).run());
+
+        if (record) {
+            Files.writeString(baselineFile, new JSONObject(current).toString(2), StandardCharsets.UTF_8);
+            System.out.println("Baseline recorded: " + baselineFile.toAbsolutePath());
+            return;
+        }
+
+        if (!Files.exists(baselineFile)) {
+            System.err.println("No baseline at " + baselineFile.toAbsolutePath() + " (run with --record first)");
+            System.exit(2);
+        }
+        JSONObject baseline = new JSONObject(Files.readString(baselineFile, StandardCharsets.UTF_8));
+        System.exit(compare(baseline, current, threshold) ? 0 : 1);
+    }
+
+    // benchmark[params] -> {score, unit, higherIsBetter, allocNorm}
+    private static Map<String, JSONObject> summarize(Collection<RunResult> results) {
+        Map<String, JSONObject> summary = new TreeMap<>();
+        for (RunResult run : results) {
+            BenchmarkParams params = run.getParams();
+            StringBuilder key = new StringBuilder(params.getBenchmark());
+            for (String param : params.getParamsKeys()) {
+                key.append(key.indexOf("[") < 0 ? "[" : ",").append(param).append('=').append(params.getParam(param));
+            }
+            if (!params.getParamsKeys().isEmpty()) key.append(']');
+
+            Result<?> primary = run.getPrimaryResult();
+            JSONObject entry = new JSONObject()
+                    .put("score", primary.getScore())
+                    .put("unit", primary.getScoreUnit())
+                    .put("higherIsBetter", params.getMode() == Mode.Throughput);
+            run.getSecondaryResults().forEach((label, result) -> {
+                if (label.endsWith(ALLOC_NORM)) entry.put("allocNorm", result.getScore());
+            });
+            summary.put(key.toString(), entry);
+        }
+        return summary;
+    }
+
+    private static boolean compare(JSONObject baseline, Map<String, JSONObject> current, double threshold) {
+        boolean ok = true;
+        System.out.printf("%n%-90s %14s %14s %9s %12s %12s%n", "Benchmark", "baseline", "current", "change", "B/op base", "B/op now");
+        for (Map.Entry<String, JSONObject> e : current.entrySet()) {
+            JSONObject now = e.getValue();
+            JSONObject before = baseline.optJSONObject(e.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.2f %9s%n", e.getKey(), "-", now.getDouble("score"), "new");
+                continue;
+            }
+
+            double change = (now.getDouble("score") - before.getDouble("score")) / before.getDouble("score");
+            boolean slower = now.getBoolean("higherIsBetter") ? change < -threshold : change > threshold;
+
+            double allocBefore = before.optDouble("allocNorm", Double.NaN);
+            double allocNow = now.optDouble("allocNorm", Double.NaN);
+            // Ignore noise on near-zero allocation benchmarks
+            boolean allocates = !Double.isNaN(allocBefore) && !Double.isNaN(allocNow)
+                    && allocNow > 64 && allocNow > allocBefore * (1 + threshold);
+
+            String verdict = slower || allocates ? "  <-- REGRESSION" : "";
+            ok &= verdict.isEmpty();
+            System.out.printf("%-90s %14.2f %14.2f %+8.1f%% %12.0f %12.0f%s%n",
+                    e.getKey(), before.getDouble("score"), now.getDouble("score"), change * 100, allocBefore, allocNow, verdict);
+        }
+        System.out.println(ok ? "\nNo regressions beyond " + (int) (threshold * 100) + "%." : "\nRegressions detected.");
+        return ok;
+    }
+}
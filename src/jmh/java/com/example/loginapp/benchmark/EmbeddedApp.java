@@ -0,0 +1,75 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.MineAppApplication;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The real application context on an in-memory H2 database (PostgreSQL mode), seeded with users,
+ * for benchmarks that need wired services and repositories.
+ * <p>
+ * The H2 settings are only defaults: pass {@code -Dspring.datasource.url=jdbc:postgresql://...}
+ * (plus username, password and {@code -Dspring.jpa.properties.hibernate.dialect}) to run the same
+ * benchmarks against a real Postgres, whose planner is what the lookup benchmarks are really about.
+ */
+final class EmbeddedApp {
+
+    static final String PASSWORD = "correct horse battery staple";
+
+
+    private EmbeddedApp() {}
+
+    static ConfigurableApplicationContext start(int seededUsers) {
+        return start(seededUsers, new String[0]);
+    }
+
+    // Extra "key=value" properties are applied on top of the defaults below
+    static ConfigurableApplicationContext start(int seededUsers, String... extraProperties) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MineAppApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .properties(extraProperties)
+                .run();
+
+        seed(context, seededUsers);
+        return context;
+    }
+
+    // user0..userN-1 / user{i}@example.com, all sharing one pre-computed hash.
+    // Plain JDBC batches, far faster than saveAll for large tables. Ids come straight from users_seq
+    // (one pooled block per row, so they are sparse) and never collide with ids Hibernate hands out later.
+    private static void seed(ConfigurableApplicationContext context, int count) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        String hash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        String nextId = context.getBean(EntityManagerFactory.class).unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport().getSelectSequenceNextValString("users_seq");
+        String insertUser = "INSERT INTO users (id, username, email, password, name, role, username_normalized, "
+                + "email_normalized) VALUES (" + nextId + ", ?, ?, ?, ?, ?, ?, ?)";
+
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String username = "user" + i;
+            String email = username + "@example.com";
+            batch.add(new Object[]{username, email, hash, "User " + i, "USER", username, email});
+            if (batch.size() == 1000) {
+                jdbc.batchUpdate(insertUser, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) jdbc.batchUpdate(insertUser, batch);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.model.LoginIdentity;
+import com.example.loginapp.model.User;
+import com.example.loginapp.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The legacy {@code username = ? OR email = ?} lookup against the classified single-column lookup
+ * on the normalized columns, on a large seeded {@code users} table. Goes straight to the repository
+ * so {@code UserLookupCache} does not hide the database cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IdentityLookupBenchmark {
+
+    @Param({"1000000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+
+    @Setup
+    public void setup() {
+        context = EmbeddedApp.start(users);
+        userRepository = context.getBean(UserRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<User> orQuery_username() {
+        String input = "user" + ThreadLocalRandom.current().nextInt(users);
+        return userRepository.findByUsernameOrEmail(input, input);
+    }
+
+    @Benchmark
+    public Optional<User> orQuery_email() {
+        String input = "user" + ThreadLocalRandom.current().nextInt(users) + "@example.com";
+        return userRepository.findByUsernameOrEmail(input, input);
+    }
+
+    @Benchmark
+    public Optional<User> orQuery_unknown() {
+        String input = "nobody" + ThreadLocalRandom.current().nextInt(users);
+        return userRepository.findByUsernameOrEmail(input, input);
+    }
+
+    @Benchmark
+    public Optional<User> normalized_username() {
+        return lookup("User" + ThreadLocalRandom.current().nextInt(users));
+    }
+
+    @Benchmark
+    public Optional<User> normalized_email() {
+        return lookup("User" + ThreadLocalRandom.current().nextInt(users) + "@Example.com");
+    }
+
+    @Benchmark
+    public Optional<User> normalized_unknown() {
+        return lookup("nobody" + ThreadLocalRandom.current().nextInt(users));
+    }
+
+    // Mirrors UserLookupCache's loader on a fully backfilled table
+    private Optional<User> lookup(String input) {
+        LoginIdentity identity = LoginIdentity.of(input);
+        return identity.email()
+                ? userRepository.findFirstByEmailNormalizedOrderByIdAsc(identity.value())
+                : userRepository.findFirstByUsernameNormalizedOrderByIdAsc(identity.value());
+    }
+}
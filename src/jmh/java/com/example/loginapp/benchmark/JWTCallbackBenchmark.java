@@ -0,0 +1,149 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.model.SSOConfig;
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.example.loginapp.service.JWTVerifierRegistry;
+import com.example.loginapp.service.PemKeys;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature-verification part of {@code JWTController.handleSSOCallback}: parse, verify, read claims.
+ * Single-threaded, so ops/s is callbacks per second per core.
+ * <p>
+ * {@code *_perCallback} reproduce building the verifier on every request (the old code for HS256,
+ * and the naive way to add RS256); {@code *_registry} use {@link JWTVerifierRegistry}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JWTCallbackBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-0123456789";
+
+    private SSOConfigSnapshot config;
+    private SSOConfigSnapshot esConfig;
+    private JWTVerifierRegistry registry;
+    private String rsaPem;
+
+    private String hs256Token;
+    private String rs256Token;
+    private String es256Token;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        KeyPair rsa = rsaGenerator.generateKeyPair();
+
+        KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair ec = ecGenerator.generateKeyPair();
+
+        rsaPem = pem(rsa.getPublic().getEncoded());
+
+        hs256Token = sign(JWSAlgorithm.HS256, new MACSigner(SECRET));
+        rs256Token = sign(JWSAlgorithm.RS256, new RSASSASigner(rsa.getPrivate()));
+        es256Token = sign(JWSAlgorithm.ES256, new ECDSASigner((ECPrivateKey) ec.getPrivate()));
+
+        registry = new JWTVerifierRegistry();
+        config = snapshot(SECRET, rsaPem);
+        // ES256 uses its own config version, as if the admin had switched keys
+        esConfig = snapshot(SECRET, pem(ec.getPublic().getEncoded())).withVersion(2);
+    }
+
+    @Benchmark
+    public JWTClaimsSet hs256_perCallback() throws Exception {
+        SignedJWT jwt = SignedJWT.parse(hs256Token);
+        if (!jwt.verify(new MACVerifier(SECRET))) throw new IllegalStateException();
+        return jwt.getJWTClaimsSet();
+    }
+
+    @Benchmark
+    public JWTClaimsSet hs256_registry() throws Exception {
+        SignedJWT jwt = SignedJWT.parse(hs256Token);
+        if (!jwt.verify(registry.verifierFor(config, jwt.getHeader().getAlgorithm()))) throw new IllegalStateException();
+        return jwt.getJWTClaimsSet();
+    }
+
+    @Benchmark
+    public JWTClaimsSet rs256_perCallback() throws Exception {
+        SignedJWT jwt = SignedJWT.parse(rs256Token);
+        if (!jwt.verify(new RSASSAVerifier((RSAPublicKey) PemKeys.parsePublicKey(rsaPem)))) throw new IllegalStateException();
+        return jwt.getJWTClaimsSet();
+    }
+
+    @Benchmark
+    public JWTClaimsSet rs256_registry() throws Exception {
+        SignedJWT jwt = SignedJWT.parse(rs256Token);
+        if (!jwt.verify(registry.verifierFor(config, jwt.getHeader().getAlgorithm()))) throw new IllegalStateException();
+        return jwt.getJWTClaimsSet();
+    }
+
+    @Benchmark
+    public JWTClaimsSet es256_registry() throws Exception {
+        SignedJWT jwt = SignedJWT.parse(es256Token);
+        if (!jwt.verify(registry.verifierFor(esConfig, jwt.getHeader().getAlgorithm()))) throw new IllegalStateException();
+        return jwt.getJWTClaimsSet();
+    }
+
+    private static String sign(JWSAlgorithm algorithm, JWSSigner signer) throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("jane.doe")
+                .claim("email", "jane.doe@example.com")
+                .claim("first_name", "Jane")
+                .claim("last_name", "Doe")
+                .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(algorithm), claims);
+        jwt.sign(signer);
+        return jwt.serialize();
+    }
+
+    private static SSOConfigSnapshot snapshot(String secret, String publicKeyPem) {
+        SSOConfig entity = new SSOConfig();
+        entity.setId(1L);
+        entity.setJwtEnabled(true);
+        entity.setJwtSecret(secret);
+        entity.setJwtPublicKey(publicKeyPem);
+        return SSOConfigSnapshot.of(1, entity);
+    }
+
+    private static String pem(byte[] der) {
+        return "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(der)
+                + "\n-----END PUBLIC KEY-----\n";
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.service.LoginThrottle;
+import com.example.loginapp.service.LoginThrottledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LoginThrottle#check} under contention: what a throttled attempt costs (compare with the
+ * ~50-100 ms of {@link PasswordBenchmark}), and the overhead it adds to an allowed one.
+ * <p>
+ * {@code rejected_*} hammer one drained account / IP from all threads, as a credential-stuffing run
+ * against one user would; {@code allowed_spread} uses many IPs and accounts with generous limits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoginThrottleBenchmark {
+
+    static final int KEYS = 10_000;
+
+    private LoginThrottle strict;
+    private LoginThrottle generous;
+
+    @Setup
+    public void setup() {
+        strict = new LoginThrottle(new SimpleMeterRegistry(), true, 1, 1, 1, 1, 100_000, Duration.ofMinutes(15));
+        generous = new LoginThrottle(new SimpleMeterRegistry(), true, 1_000_000, 1_000_000_000, 1_000_000,
+                1_000_000_000, 100_000, Duration.ofMinutes(15));
+
+        // Drain the victim's buckets
+        try {
+            strict.check("victim@example.com", "203.0.113.7");
+        } catch (LoginThrottledException ignored) {
+            // already empty
+        }
+    }
+
+    @Benchmark
+    public Object rejected_sameIp() {
+        try {
+            strict.check("victim@example.com", "203.0.113.7");
+            return null;
+        } catch (LoginThrottledException e) {
+            return e;
+        }
+    }
+
+    // Botnet: a fresh address each time but the same target account
+    @Benchmark
+    public Object rejected_sameAccount() {
+        try {
+            strict.check("victim@example.com", "198.51.100." + ThreadLocalRandom.current().nextInt(KEYS));
+            return null;
+        } catch (LoginThrottledException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public void allowed_spread() {
+        int key = ThreadLocalRandom.current().nextInt(KEYS);
+        generous.check("user" + key + "@example.com", "10.0." + (key >> 8) + "." + (key & 0xff));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code UserService.passwordMatches} with the application's configured {@code PasswordEncoder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class PasswordBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private String storedHash;
+
+    @Setup
+    public void setup() {
+        context = EmbeddedApp.start(0);
+        userService = context.getBean(UserService.class);
+        storedHash = context.getBean(PasswordEncoder.class).encode(EmbeddedApp.PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean passwordMatches_correct() {
+        return userService.passwordMatches(EmbeddedApp.PASSWORD, storedHash);
+    }
+
+    @Benchmark
+    public boolean passwordMatches_wrong() {
+        return userService.passwordMatches("wrong password", storedHash);
+    }
+}
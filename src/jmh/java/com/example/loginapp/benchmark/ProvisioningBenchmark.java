@@ -0,0 +1,78 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.service.UserProvisioningService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code UserProvisioningService.provision} throughput in users per second: each invocation pushes a
+ * feed of {@link #FEED_SIZE} users — mostly joiners, plus updates and leavers for users created by
+ * earlier invocations — through the real parse, batch and flush path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ProvisioningBenchmark {
+
+    static final int FEED_SIZE = 5_000;
+
+    private ConfigurableApplicationContext context;
+    private UserProvisioningService provisioningService;
+    private int round;
+
+    @Setup
+    public void setup() {
+        context = EmbeddedApp.start(0);
+        provisioningService = context.getBean(UserProvisioningService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FEED_SIZE)
+    public UserProvisioningService.Summary provisionFeed() throws IOException {
+        byte[] feed = feed(round++);
+        return provisioningService.provision(new ByteArrayInputStream(feed), OutputStream.nullOutputStream());
+    }
+
+    // NDJSON feed: 80% joiners, 10% updates and 10% leavers of the previous round's joiners
+    private static byte[] feed(int round) {
+        StringBuilder ndjson = new StringBuilder(FEED_SIZE * 96);
+        for (int i = 0; i < FEED_SIZE; i++) {
+            int kind = i % 10;
+            if (kind < 8 || round == 0) {
+                String id = "r" + round + "u" + i;
+                ndjson.append("{\"userName\":\"").append(id).append("\",\"email\":\"").append(id)
+                        .append("@example.com\",\"name\":\"Joiner ").append(i).append("\"}\n");
+            } else {
+                String id = "r" + (round - 1) + "u" + (i - 8);
+                ndjson.append("{\"userName\":\"").append(id).append("\",\"email\":\"").append(id).append("@example.com\"")
+                        .append(kind == 8 ? ",\"name\":\"Renamed\"}\n" : ",\"active\":false}\n");
+            }
+        }
+        return ndjson.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
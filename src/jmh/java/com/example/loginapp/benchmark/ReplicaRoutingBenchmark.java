@@ -0,0 +1,114 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.config.ReplicaLagMonitor;
+import com.example.loginapp.model.User;
+import com.example.loginapp.repository.UserRepository;
+import com.example.loginapp.service.ReplicaRouting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only user lookups with a read replica configured: two in-memory H2 databases stand in for the
+ * primary and the replica. The replica is a copy of the seeded primary whose rows are marked
+ * ({@code name = 'replica'}), and its "lag" is whatever the {@code replica_lag} table says, so setup can
+ * check which database actually served a lookup: the replica at lag 0, the primary past {@code max-lag}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReplicaRoutingBenchmark {
+
+    private static final String REPLICA_URL =
+            "jdbc:h2:mem:bench_replica;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+
+    @Param({"10000"})
+    public int users;
+
+    // Replication lag reported by the replica; max-lag is 2s
+    @Param({"0", "30"})
+    public int lagSeconds;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        context = EmbeddedApp.start(users,
+                "db.replica.url=" + REPLICA_URL,
+                "db.replica.username=sa",
+                "db.replica.password=",
+                "db.replica.max-lag=2s",
+                "db.replica.lag-check-interval-ms=100",
+                "db.replica.lag-query=SELECT lag_seconds FROM replica_lag");
+        userRepository = context.getBean(UserRepository.class);
+
+        // Clone the seeded primary into the replica, then mark the copies
+        JdbcTemplate primary = context.getBean(JdbcTemplate.class);
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        for (String statement : primary.queryForList("SCRIPT", String.class)) {
+            replica.execute(statement);
+        }
+        replica.update("UPDATE users SET name = 'replica'");
+        replica.execute("CREATE TABLE replica_lag (lag_seconds DOUBLE PRECISION)");
+        replica.update("INSERT INTO replica_lag VALUES (?)", lagSeconds);
+
+        // The monitor re-checks every 100 ms; wait for it to take the new lag into account
+        ReplicaLagMonitor monitor = context.getBean(ReplicaLagMonitor.class);
+        boolean expectReplica = lagSeconds <= 2;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (monitor.isUsable() != expectReplica && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        String servedBy = "replica".equals(userRepository.findFirstByUsernameNormalizedOrderByIdAsc("user0")
+                .map(User::getName).orElse(null)) ? "replica" : "primary";
+        System.out.println("Lag " + lagSeconds + "s: read-only lookups served by the " + servedBy);
+        if (expectReplica != "replica".equals(servedBy)) {
+            throw new IllegalStateException("Expected reads on the " + (expectReplica ? "replica" : "primary")
+                    + " at lag " + lagSeconds + "s, got the " + servedBy);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "")).execute("SHUTDOWN");
+    }
+
+    // Routed by the read-only transaction: the replica while it is current
+    @Benchmark
+    public Optional<User> routedLookup() {
+        return userRepository.findFirstByUsernameNormalizedOrderByIdAsc(randomUser());
+    }
+
+    // The same lookup pinned to the primary, as read-your-writes does after a change
+    @Benchmark
+    public Optional<User> primaryLookup() {
+        String username = randomUser();
+        return ReplicaRouting.onPrimary(() -> userRepository.findFirstByUsernameNormalizedOrderByIdAsc(username));
+    }
+
+    private String randomUser() {
+        return "user" + ThreadLocalRandom.current().nextInt(users);
+    }
+}
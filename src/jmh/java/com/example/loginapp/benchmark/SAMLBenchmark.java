@@ -0,0 +1,190 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.model.SAMLAssertion;
+import com.example.loginapp.service.SAMLArtifactCache;
+import com.example.loginapp.service.SAMLResponseReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * SAML hot paths as implemented in {@code SAMLController}: the AuthnRequest redirect ({@code samlLogin}),
+ * SP metadata and reading a signed SAMLResponse ({@code samlCallback}), each against the original
+ * per-request code ({@code *_perRequest}, {@code samlResponse_dom}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SAMLBenchmark {
+
+    static final String BASE_URL = "https://app.example.com";
+
+    private String samlResponse;
+    private SAMLArtifactCache artifacts;
+
+    @Setup
+    public void setup() {
+        artifacts = new SAMLArtifactCache(BASE_URL, true, 0);
+        samlResponse = Base64.getEncoder().encodeToString(SAMLResponses.signedResponse("jane.doe@example.com").getBytes(StandardCharsets.UTF_8));
+    }
+
+    // SAMLController.samlLogin: pre-rendered segments, fresh ID + instant, pooled Deflater
+    @Benchmark
+    public String authnRequest_controller() {
+        return artifacts.authnRequest().samlRequest();
+    }
+
+    // Baseline: the previous samlLogin — format the XML, new Deflater, Base64, URLEncoder
+    @Benchmark
+    public String authnRequest_perRequest() throws Exception {
+        String acsUrl = BASE_URL + "/sso/saml/callback";
+        String issuer = BASE_URL + "/sso/saml/metadata";
+
+        String authnRequest = """
+            <samlp:AuthnRequest xmlns:samlp="urn:oasis:names:tc:SAML:2.0:protocol"
+                ID="_12345"
+                Version="2.0"
+                IssueInstant="2025-10-31T12:00:00Z"
+                ProtocolBinding="urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST"
+                AssertionConsumerServiceURL="%s">
+                <saml:Issuer xmlns:saml="urn:oasis:names:tc:SAML:2.0:assertion">%s</saml:Issuer>
+                <samlp:NameIDPolicy AllowCreate="true"
+                    Format="urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress"/>
+            </samlp:AuthnRequest>
+            """.formatted(acsUrl, issuer);
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFLATED, true);
+        DeflaterOutputStream deflaterStream = new DeflaterOutputStream(byteArrayOutputStream, deflater);
+        deflaterStream.write(authnRequest.getBytes(StandardCharsets.UTF_8));
+        deflaterStream.close();
+
+        String samlRequest = Base64.getEncoder().encodeToString(byteArrayOutputStream.toByteArray());
+        return URLEncoder.encode(samlRequest, StandardCharsets.UTF_8);
+    }
+
+    // SAMLController.metadata: cached bytes + ETag
+    @Benchmark
+    public byte[] metadata_controller() {
+        return artifacts.metadata().body();
+    }
+
+    // Baseline: the previous metadata() string concatenation
+    @Benchmark
+    public byte[] metadata_perRequest() {
+        String entityId = BASE_URL + "/sso/saml/metadata";
+        String acsUrl = BASE_URL + "/sso/saml/callback";
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<EntityDescriptor xmlns=\"urn:oasis:names:tc:SAML:2.0:metadata\" entityID=\"" + entityId + "\">"
+                + "<SPSSODescriptor WantAssertionsSigned=\"true\" AuthnRequestsSigned=\"false\" protocolSupportEnumeration=\"urn:oasis:names:tc:SAML:2.0:protocol\">"
+                + "<AssertionConsumerService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\" Location=\"" + acsUrl + "\" index=\"1\"/>"
+                + "</SPSSODescriptor>"
+                + "</EntityDescriptor>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // SAMLController.samlCallback: streaming StAX read of status, NameID, conditions and attributes
+    @Benchmark
+    public SAMLAssertion samlResponse_controller() {
+        return SAMLResponseReader.read(samlResponse);
+    }
+
+    // Baseline: the previous callback — decode to a String, new DocumentBuilderFactory, DOM, read saml:NameID
+    @Benchmark
+    public String samlResponse_dom() throws Exception {
+        byte[] decodedBytes = Base64.getDecoder().decode(samlResponse);
+        String xml = new String(decodedBytes);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new java.io.ByteArrayInputStream(xml.getBytes()));
+        document.getDocumentElement().normalize();
+
+        return document.getElementsByTagName("saml:NameID").item(0).getTextContent();
+    }
+
+    /**
+     * Realistically sized IdP responses (~7 KB): enveloped signature with an embedded certificate,
+     * conditions, authn statement and a handful of attributes.
+     */
+    static final class SAMLResponses {
+
+        private SAMLResponses() {}
+
+        static String signedResponse(String nameId) {
+            byte[] fakeCertificate = new byte[1100];
+            new Random(42).nextBytes(fakeCertificate);
+            String certificate = Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(fakeCertificate);
+            String signatureValue = Base64.getEncoder().encodeToString(new byte[256]);
+
+            return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <samlp:Response xmlns:samlp="urn:oasis:names:tc:SAML:2.0:protocol" xmlns:saml="urn:oasis:names:tc:SAML:2.0:assertion"
+                    ID="_resp8f2b1c" Version="2.0" IssueInstant="2025-10-31T12:00:05Z"
+                    Destination="%1$s/sso/saml/callback" InResponseTo="_12345">
+                  <saml:Issuer>https://login.xecurify.com/moas/idp</saml:Issuer>
+                  <samlp:Status><samlp:StatusCode Value="urn:oasis:names:tc:SAML:2.0:status:Success"/></samlp:Status>
+                  <saml:Assertion ID="_assert4d7e9a" Version="2.0" IssueInstant="2025-10-31T12:00:05Z">
+                    <saml:Issuer>https://login.xecurify.com/moas/idp</saml:Issuer>
+                    <ds:Signature xmlns:ds="http://www.w3.org/2000/09/xmldsig#">
+                      <ds:SignedInfo>
+                        <ds:CanonicalizationMethod Algorithm="http://www.w3.org/2001/10/xml-exc-c14n#"/>
+                        <ds:SignatureMethod Algorithm="http://www.w3.org/2001/04/xmldsig-more#rsa-sha256"/>
+                        <ds:Reference URI="#_assert4d7e9a">
+                          <ds:Transforms>
+                            <ds:Transform Algorithm="http://www.w3.org/2000/09/xmldsig#enveloped-signature"/>
+                            <ds:Transform Algorithm="http://www.w3.org/2001/10/xml-exc-c14n#"/>
+                          </ds:Transforms>
+                          <ds:DigestMethod Algorithm="http://www.w3.org/2001/04/xmlenc#sha256"/>
+                          <ds:DigestValue>q1Zx0m1b6O0d3kYl2m8c2n0wVxS9hQ0P1yJm2o3uF5A=</ds:DigestValue>
+                        </ds:Reference>
+                      </ds:SignedInfo>
+                      <ds:SignatureValue>%3$s</ds:SignatureValue>
+                      <ds:KeyInfo><ds:X509Data><ds:X509Certificate>%4$s</ds:X509Certificate></ds:X509Data></ds:KeyInfo>
+                    </ds:Signature>
+                    <saml:Subject>
+                      <saml:NameID Format="urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress">%2$s</saml:NameID>
+                      <saml:SubjectConfirmation Method="urn:oasis:names:tc:SAML:2.0:cm:bearer">
+                        <saml:SubjectConfirmationData NotOnOrAfter="2025-10-31T12:05:05Z" Recipient="%1$s/sso/saml/callback" InResponseTo="_12345"/>
+                      </saml:SubjectConfirmation>
+                    </saml:Subject>
+                    <saml:Conditions NotBefore="2025-10-31T11:59:35Z" NotOnOrAfter="2025-10-31T12:05:05Z">
+                      <saml:AudienceRestriction><saml:Audience>%1$s/sso/saml/metadata</saml:Audience></saml:AudienceRestriction>
+                    </saml:Conditions>
+                    <saml:AuthnStatement AuthnInstant="2025-10-31T12:00:04Z" SessionIndex="_sess91ac">
+                      <saml:AuthnContext><saml:AuthnContextClassRef>urn:oasis:names:tc:SAML:2.0:ac:classes:PasswordProtectedTransport</saml:AuthnContextClassRef></saml:AuthnContext>
+                    </saml:AuthnStatement>
+                    <saml:AttributeStatement>
+                      <saml:Attribute Name="email"><saml:AttributeValue>%2$s</saml:AttributeValue></saml:Attribute>
+                      <saml:Attribute Name="firstName"><saml:AttributeValue>Jane</saml:AttributeValue></saml:Attribute>
+                      <saml:Attribute Name="lastName"><saml:AttributeValue>Doe</saml:AttributeValue></saml:Attribute>
+                      <saml:Attribute Name="groups">
+                        <saml:AttributeValue>engineering</saml:AttributeValue>
+                        <saml:AttributeValue>sso-users</saml:AttributeValue>
+                      </saml:Attribute>
+                    </saml:AttributeStatement>
+                  </saml:Assertion>
+                </samlp:Response>
+                """.formatted(BASE_URL, nameId, signatureValue, certificate);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.model.SAMLAssertion;
+import com.example.loginapp.model.SSOConfig;
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.example.loginapp.service.PemKeys;
+import com.example.loginapp.service.SAMLResponseReader;
+import com.example.loginapp.service.SAMLSignatureVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.crypto.KeySelector;
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignatureMethod;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checking the IdP signature in {@code SAMLController.samlCallback}, on a ~7 KB response whose
+ * assertion carries a real RSA-SHA256 enveloped signature. Single-threaded, so ops/s is callbacks per
+ * second per core.
+ * <p>
+ * {@code read_unsigned} is the callback without verification; {@code callback_verified} adds
+ * {@link SAMLSignatureVerifier} (certificate cached per config version, reused parser and signature
+ * factory); {@code callback_perRequest} re-parses the certificate and rebuilds both factories each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SAMLSignatureBenchmark {
+
+    private SSOConfigSnapshot config;
+    private SAMLSignatureVerifier verifier;
+    private String certificatePem;
+    private String samlResponse;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyStore keyStore = selfSignedKeyStore();
+        PrivateKey privateKey = (PrivateKey) keyStore.getKey("idp", "changeit".toCharArray());
+        X509Certificate certificate = (X509Certificate) keyStore.getCertificate("idp");
+
+        certificatePem = "-----BEGIN CERTIFICATE-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(certificate.getEncoded())
+                + "\n-----END CERTIFICATE-----\n";
+        samlResponse = Base64.getEncoder().encodeToString(sign(
+                SAMLBenchmark.SAMLResponses.signedResponse("jane.doe@example.com"), privateKey));
+
+        SSOConfig entity = new SSOConfig();
+        entity.setId(1L);
+        entity.setSamlEnabled(true);
+        entity.setSamlCertificate(certificatePem);
+        config = SSOConfigSnapshot.of(1, entity);
+        verifier = new SAMLSignatureVerifier();
+
+        // Fail fast rather than benchmark the rejection path
+        callback_verified();
+        callback_perRequest();
+    }
+
+    @Benchmark
+    public SAMLAssertion read_unsigned() {
+        return SAMLResponseReader.read(samlResponse);
+    }
+
+    @Benchmark
+    public SAMLAssertion callback_verified() {
+        byte[] xml = SAMLResponseReader.decode(samlResponse);
+        SAMLAssertion assertion = SAMLResponseReader.read(xml);
+        verifier.verify(config, xml, assertion);
+        return assertion;
+    }
+
+    // The naive version: PEM, DocumentBuilderFactory and XMLSignatureFactory built on every callback
+    @Benchmark
+    public SAMLAssertion callback_perRequest() throws Exception {
+        byte[] xml = SAMLResponseReader.decode(samlResponse);
+        SAMLAssertion assertion = SAMLResponseReader.read(xml);
+
+        X509Certificate certificate = PemKeys.parseCertificate(certificatePem);
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+
+        Element assertionElement = (Element) document.getElementsByTagNameNS(
+                "urn:oasis:names:tc:SAML:2.0:assertion", "Assertion").item(0);
+        assertionElement.setIdAttributeNS(null, "ID", true);
+        Node signature = document.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature").item(0);
+
+        DOMValidateContext context = new DOMValidateContext(
+                KeySelector.singletonKeySelector(certificate.getPublicKey()), signature);
+        if (!XMLSignatureFactory.getInstance("DOM").unmarshalXMLSignature(context).validate(context)) {
+            throw new IllegalStateException("signature invalid");
+        }
+        return assertion;
+    }
+
+    // RSA-2048 key and self-signed certificate from the JDK's keytool (no certificate builder in the JDK API)
+    private static KeyStore selfSignedKeyStore() throws Exception {
+        Path file = Files.createTempFile("saml-idp", ".p12");
+        Files.delete(file);
+        try {
+            Process keytool = new ProcessBuilder(
+                    Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                    "-genkeypair", "-alias", "idp", "-keyalg", "RSA", "-keysize", "2048", "-validity", "365",
+                    "-dname", "CN=idp.example.com", "-storetype", "PKCS12", "-keystore", file.toString(),
+                    "-storepass", "changeit", "-keypass", "changeit")
+                    .redirectErrorStream(true)
+                    .start();
+            keytool.getInputStream().transferTo(OutputStream.nullOutputStream());
+            if (keytool.waitFor() != 0) throw new IllegalStateException("keytool failed");
+
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = new FileInputStream(file.toFile())) {
+                keyStore.load(in, "changeit".toCharArray());
+            }
+            return keyStore;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Replaces the sample's placeholder signature with a real enveloped signature over the assertion
+    private static byte[] sign(String response, PrivateKey privateKey) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder()
+                .parse(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+        Node placeholder = document.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature").item(0);
+        Node insertBefore = placeholder.getNextSibling();
+        Element assertion = (Element) placeholder.getParentNode();
+        assertion.removeChild(placeholder);
+        assertion.setIdAttributeNS(null, "ID", true);
+
+        XMLSignatureFactory signatures = XMLSignatureFactory.getInstance("DOM");
+        Reference reference = signatures.newReference("#" + assertion.getAttribute("ID"),
+                signatures.newDigestMethod(DigestMethod.SHA256, null),
+                List.of(signatures.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null),
+                        signatures.newTransform(CanonicalizationMethod.EXCLUSIVE, (TransformParameterSpec) null)),
+                null, null);
+        SignedInfo signedInfo = signatures.newSignedInfo(
+                signatures.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (C14NMethodParameterSpec) null),
+                signatures.newSignatureMethod(SignatureMethod.RSA_SHA256, null),
+                List.of(reference));
+
+        DOMSignContext context = new DOMSignContext(privateKey, assertion, insertBefore);
+        context.setDefaultNamespacePrefix("ds");
+        signatures.newXMLSignature(signedInfo, null).sign(context);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(out));
+        return out.toByteArray();
+    }
+}
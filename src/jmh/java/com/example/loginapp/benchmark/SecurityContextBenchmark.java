@@ -0,0 +1,220 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.model.LoginPrincipal;
+import com.example.loginapp.service.SignedCookieSecurityContextRepository;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Load test for the two {@code security.context.mode}s: what an authenticated request pays to restore
+ * its SecurityContext, run from several threads at once, and what each logged-in user costs the node.
+ * <p>
+ * SESSION keeps the context on the heap of one node (hence sticky sessions, and serialization for any
+ * replication); COOKIE keeps nothing server-side and instead verifies (or decrypts) the cookie per request.
+ * The per-user memory figures are printed once at setup: heap retained per session-held context over
+ * 10,000 users and its serialized size, for {@code LoginPrincipal} and the principals it replaced, and
+ * the cookie size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SecurityContextBenchmark {
+
+    static final int USERS = 10_000;
+
+    private final SecurityContextRepository sessionRepository = new HttpSessionSecurityContextRepository();
+    private SignedCookieSecurityContextRepository signedRepository;
+    private SignedCookieSecurityContextRepository encryptedRepository;
+
+    private Authentication authentication;
+    private String signedCookie;
+    private String encryptedCookie;
+    private HttpSession session;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        byte[] secret = new byte[32];
+        new Random(42).nextBytes(secret);
+        signedRepository = new SignedCookieSecurityContextRepository("LOGIN_AUTH", secret, Duration.ofHours(8), false);
+        encryptedRepository = new SignedCookieSecurityContextRepository("LOGIN_AUTH", secret, Duration.ofHours(8), true);
+
+        authentication = authentication(0);
+        signedCookie = signedRepository.issue(authentication);
+        encryptedCookie = encryptedRepository.issue(authentication);
+
+        // One session per user, filled the way form login / the JWT callback do
+        session = Fake.session();
+        sessionRepository.saveContext(new SecurityContextImpl(authentication), Fake.request(session, null), Fake.response());
+
+        reportMemory();
+    }
+
+    @Benchmark
+    public Authentication session_load() {
+        return sessionRepository.loadDeferredContext(Fake.request(session, null)).get().getAuthentication();
+    }
+
+    @Benchmark
+    public Authentication cookieSigned_load() {
+        return signedRepository.loadDeferredContext(Fake.request(null, signedCookie)).get().getAuthentication();
+    }
+
+    @Benchmark
+    public Authentication cookieEncrypted_load() {
+        return encryptedRepository.loadDeferredContext(Fake.request(null, encryptedCookie)).get().getAuthentication();
+    }
+
+    // Paid once per login, not per request
+    @Benchmark
+    public String cookieSigned_issue() {
+        return signedRepository.issue(authentication);
+    }
+
+    private void reportMemory() throws Exception {
+        System.out.println();
+        reportSession("LoginPrincipal (current)", SecurityContextBenchmark::authentication);
+        reportSession("UserDetails (old form login)", SecurityContextBenchmark::userDetailsAuthentication);
+        reportSession("User entity (old JWT callback)", SecurityContextBenchmark::entityAuthentication);
+        System.out.printf("COOKIE mode: 0 bytes per user server-side; cookie value %d bytes signed, %d bytes encrypted%n",
+                signedCookie.length(), encryptedCookie.length());
+    }
+
+    // Heap retained per session-held context over USERS users, and the size a session store would serialize
+    private void reportSession(String shape, IntFunction<Authentication> authentications) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        List<HttpSession> sessions = new ArrayList<>(USERS);
+        long before = usedHeap(runtime);
+        for (int i = 0; i < USERS; i++) {
+            HttpSession userSession = Fake.session();
+            sessionRepository.saveContext(new SecurityContextImpl(authentications.apply(i)), Fake.request(userSession, null), Fake.response());
+            sessions.add(userSession);
+        }
+        long retained = (usedHeap(runtime) - before) / USERS;
+
+        String serializedSize;
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(sessions.get(0).getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY));
+            serializedSize = serialized.size() + " bytes serialized";
+        } catch (NotSerializableException e) {
+            serializedSize = "not serializable (" + e.getMessage() + ")";
+        }
+
+        System.out.printf("SESSION mode, %-31s ~%d bytes heap per logged-in user (%d users), %s%n",
+                shape + ":", retained, sessions.size(), serializedSize);
+    }
+
+    private static long usedHeap(Runtime runtime) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // What form login and the SSO callbacks store now
+    private static Authentication authentication(int i) {
+        return new LoginPrincipal((long) i, "user" + i + "@example.com", "User " + i, List.of("ROLE_USER")).toAuthentication();
+    }
+
+    // Form-login principal before LoginPrincipal: e-mail as user name, credentials erased after authentication
+    private static Authentication userDetailsAuthentication(int i) {
+        User principal = new User("user" + i + "@example.com", "", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        principal.eraseCredentials();
+        return UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+    }
+
+    // JWT-callback principal before LoginPrincipal: the whole JPA entity, password hash included
+    private static Authentication entityAuthentication(int i) {
+        com.example.loginapp.model.User user = new com.example.loginapp.model.User("user" + i + "@example.com",
+                "user" + i + "@example.com", "$2a$10$" + "x".repeat(53), "User " + i, "USER");
+        user.setId((long) i);
+        return UsernamePasswordAuthenticationToken.authenticated(user, null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    /**
+     * Just enough of the Servlet API for the repositories: cookies, a session with attributes, Set-Cookie.
+     */
+    static final class Fake {
+
+        private Fake() {}
+
+        static HttpSession session() {
+            Map<String, Object> attributes = new HashMap<>();
+            return (HttpSession) Proxy.newProxyInstance(Fake.class.getClassLoader(), new Class<?>[]{HttpSession.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getAttribute" -> attributes.get((String) args[0]);
+                        case "setAttribute" -> attributes.put((String) args[0], args[1]);
+                        case "removeAttribute" -> attributes.remove((String) args[0]);
+                        case "getId" -> "session";
+                        default -> defaultValue(method.getReturnType());
+                    });
+        }
+
+        static HttpServletRequest request(HttpSession session, String authCookie) {
+            Cookie[] cookies = authCookie == null ? null : new Cookie[]{new Cookie("LOGIN_AUTH", authCookie)};
+            Map<String, Object> attributes = new HashMap<>();
+            return (HttpServletRequest) Proxy.newProxyInstance(Fake.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getCookies" -> cookies;
+                        case "getSession" -> session;
+                        case "getAttribute" -> attributes.get((String) args[0]);
+                        case "setAttribute" -> attributes.put((String) args[0], args[1]);
+                        case "removeAttribute" -> attributes.remove((String) args[0]);
+                        case "getContextPath" -> "";
+                        case "isSecure" -> true;
+                        default -> defaultValue(method.getReturnType());
+                    });
+        }
+
+        static HttpServletResponse response() {
+            return (HttpServletResponse) Proxy.newProxyInstance(Fake.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+                    (proxy, method, args) -> defaultValue(method.getReturnType()));
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) return false;
+            if (type == int.class) return 0;
+            if (type == long.class) return 0L;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.config.ServerTimingFilter;
+import com.example.loginapp.service.LoginMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link ServerTimingFilter} on an auth request: the same handler (three timed phases, then the
+ * body) run bare and through the filter, which adds the recorder, the response wrapper and the header.
+ * <p>
+ * The handler does no real work, so the difference is the whole cost; a real login spends milliseconds in
+ * BCrypt or the IdP. The slow-request log line is left out: it is only built for requests already over the
+ * threshold.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServerTimingBenchmark {
+
+    private static final PrintWriter NULL_WRITER = new PrintWriter(Writer.nullWriter());
+
+    private LoginMetrics loginMetrics;
+    private ServerTimingFilter filter;
+    private FilterChain handler;
+    private Map<String, String> headers;
+
+    @Setup
+    public void setup() {
+        loginMetrics = new LoginMetrics(new SimpleMeterRegistry());
+        filter = new ServerTimingFilter(true, Duration.ofSeconds(1));
+        headers = new HashMap<>();
+
+        // Stand-in for the JWT callback: config lookup, signature, provisioning, then the view
+        handler = (request, response) -> {
+            try (LoginMetrics.Attempt attempt = loginMetrics.start(LoginMetrics.Flow.JWT)) {
+                attempt.time(LoginMetrics.Phase.CONFIG_LOOKUP, () -> "config");
+                attempt.time(LoginMetrics.Phase.SIGNATURE, () -> Boolean.TRUE);
+                attempt.time(LoginMetrics.Phase.PROVISIONING, () -> "user");
+                attempt.success();
+            }
+            response.getWriter();
+        };
+    }
+
+    @Benchmark
+    public Object bare() throws Exception {
+        HttpServletResponse response = response(headers);
+        handler.doFilter(request(), response);
+        return headers.get("Server-Timing");
+    }
+
+    @Benchmark
+    public Object filtered() throws Exception {
+        HttpServletResponse response = response(headers);
+        filter.doFilter(request(), response, handler);
+        return headers.get("Server-Timing");
+    }
+
+    private static HttpServletRequest request() {
+        Map<String, Object> attributes = new HashMap<>();
+        return (HttpServletRequest) Proxy.newProxyInstance(ServerTimingBenchmark.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getAttribute" -> attributes.get((String) args[0]);
+                    case "setAttribute" -> attributes.put((String) args[0], args[1]);
+                    case "removeAttribute" -> attributes.remove((String) args[0]);
+                    case "getDispatcherType" -> DispatcherType.REQUEST;
+                    case "getRequestURI" -> "/sso/jwt/callback";
+                    case "getContextPath" -> "";
+                    case "getMethod" -> "GET";
+                    case "isAsyncStarted" -> false;
+                    default -> null;
+                });
+    }
+
+    private static HttpServletResponse response(Map<String, String> headers) {
+        return (HttpServletResponse) Proxy.newProxyInstance(ServerTimingBenchmark.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "setHeader" -> headers.put((String) args[0], (String) args[1]);
+                    case "getWriter" -> NULL_WRITER;
+                    case "isCommitted" -> false;
+                    case "getStatus" -> 200;
+                    default -> null;
+                });
+    }
+}
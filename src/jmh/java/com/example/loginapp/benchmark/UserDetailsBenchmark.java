@@ -0,0 +1,69 @@
+package com.example.loginapp.benchmark;
+
+import com.example.loginapp.service.CustomUserDetailsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code CustomUserDetailsService.loadUserByUsername} (the Spring form-login lookup) against an
+ * embedded H2 database seeded with {@link #USERS} accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserDetailsBenchmark {
+
+    static final int USERS = 50_000;
+
+    private ConfigurableApplicationContext context;
+    private CustomUserDetailsService userDetailsService;
+
+    @Setup
+    public void setup() {
+        context = EmbeddedApp.start(USERS);
+        userDetailsService = context.getBean(CustomUserDetailsService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDetails loadByUsername() {
+        return userDetailsService.loadUserByUsername("user" + ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    @Benchmark
+    public UserDetails loadByEmail() {
+        return userDetailsService.loadUserByUsername("user" + ThreadLocalRandom.current().nextInt(USERS) + "@example.com");
+    }
+
+    // Credential-stuffing traffic: identities that don't exist
+    @Benchmark
+    public Object loadUnknown() {
+        try {
+            return userDetailsService.loadUserByUsername("nobody" + ThreadLocalRandom.current().nextInt(USERS));
+        } catch (UsernameNotFoundException e) {
+            return e;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.example.loginapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MineAppApplication {
     public static void main(String[] args) {
         SpringApplication.run(MineAppApplication.class, args);
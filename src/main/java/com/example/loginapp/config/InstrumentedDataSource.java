@@ -0,0 +1,131 @@
+package com.example.loginapp.config;
+
+import com.example.loginapp.service.QueryStatistics;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Times every statement executed through the wrapped pool and reports it to {@link QueryStatistics},
+ * with the SQL text and the shape of its bind parameters (Java types, e.g. {@code [String, Long, null]}).
+ * <p>
+ * Connections and statements are JDK proxies: one reflective hop per JDBC call, small next to the
+ * network round trip. Time is measured until execute returns, i.e. until the first rows are available;
+ * streaming the rest of a result set (the user export cursor) is not included.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private static final ClassLoader CLASS_LOADER = InstrumentedDataSource.class.getClassLoader();
+
+    private final QueryStatistics statistics;
+
+    public InstrumentedDataSource(DataSource target, QueryStatistics statistics) {
+        super(target);
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection connection(Connection target) {
+        // ConnectionProxy lets Spring's DataSourceUtils see through to the pooled connection
+        return (Connection) Proxy.newProxyInstance(CLASS_LOADER, new Class<?>[]{ConnectionProxy.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getTargetConnection" -> target;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "prepareStatement" ->
+                            statement(PreparedStatement.class, invoke(target, method, args), (String) args[0]);
+                    case "prepareCall" ->
+                            statement(CallableStatement.class, invoke(target, method, args), (String) args[0]);
+                    case "createStatement" -> statement(Statement.class, invoke(target, method, args), null);
+                    default -> invoke(target, method, args);
+                });
+    }
+
+    private Object statement(Class<? extends Statement> type, Object target, String sql) {
+        return Proxy.newProxyInstance(CLASS_LOADER, new Class<?>[]{type},
+                new StatementHandler((Statement) target, sql));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Tracks the SQL and bind types of one statement; toString() is its parameter shape
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private String sql;
+        private String[] types = new String[8];
+        private int parameterCount;
+        private int batchSize;
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String executed = args != null && args.length > 0 && args[0] instanceof String text ? text : sql;
+                long start = System.nanoTime();
+                try {
+                    return InstrumentedDataSource.invoke(target, method, args);
+                } finally {
+                    if (executed != null) statistics.record(executed, this, System.nanoTime() - start);
+                    if (name.endsWith("Batch")) batchSize = 0;
+                }
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, "setNull".equals(name) || args[1] == null ? "null" : args[1].getClass().getSimpleName());
+            } else if ("addBatch".equals(name)) {
+                batchSize++;
+                if (args != null && args.length == 1) sql = (String) args[0];
+            } else if ("clearParameters".equals(name)) {
+                parameterCount = 0;
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            return InstrumentedDataSource.invoke(target, method, args);
+        }
+
+        private void bind(int index, String type) {
+            if (index > types.length) types = Arrays.copyOf(types, Math.max(index, types.length * 2));
+            types[index - 1] = type;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        @Override
+        public String toString() {
+            String shape = "[" + String.join(", ", Arrays.asList(types).subList(0, parameterCount)) + "]";
+            return batchSize > 0 ? batchSize + " x " + shape : shape;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.loginapp.config;
+
+import com.example.loginapp.service.QueryStatistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * SQL instrumentation in place of {@code spring.jpa.show-sql}: the application's DataSource is wrapped in an
+ * {@link InstrumentedDataSource}, so JPA and JdbcTemplate statements alike are timed into {@link QueryStatistics}
+ * (slow-query log, admin top-N, {@code db.query} timer). Hibernate's own statistics and the per-repository-method
+ * timers come from Spring Boot's metrics auto-configuration (see application.properties).
+ */
+@Configuration
+public class QueryInstrumentationConfig {
+
+    // Static: a post-processor must not pull this configuration (or its dependencies) in early
+    @Bean
+    public static BeanPostProcessor queryInstrumentation(ObjectProvider<QueryStatistics> queryStatistics,
+                                                         @Value("${db.query.instrumentation.enabled:true}") boolean enabled) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Only the pools themselves: wrappers over them (the replica routing proxy) would count statements twice
+                if (!enabled || !(bean instanceof DataSource dataSource) || bean instanceof DelegatingDataSource) {
+                    return bean;
+                }
+                return new InstrumentedDataSource(dataSource, queryStatistics.getObject());
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.loginapp.config;
+
+import com.example.loginapp.service.ReplicaRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Read-only side of the routing proxy: hands out replica connections while {@link ReplicaLagMonitor}
+ * considers the replica current, and primary connections when it does not, when the caller asked for
+ * {@link ReplicaRouting#onPrimary}, or when the replica refuses a connection.
+ */
+public class ReplicaFallbackDataSource extends DelegatingDataSource {
+
+    private final DataSource primary;
+    private final ReplicaLagMonitor monitor;
+    private final Counter toReplica;
+    private final Counter toPrimary;
+
+    public ReplicaFallbackDataSource(DataSource replica, DataSource primary, ReplicaLagMonitor monitor,
+                                     MeterRegistry meterRegistry) {
+        super(replica);
+        this.primary = primary;
+        this.monitor = monitor;
+        this.toReplica = routed(meterRegistry, "replica");
+        this.toPrimary = routed(meterRegistry, "primary");
+    }
+
+    private static Counter routed(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("db.replica.routed")
+                .description("Read-only connections by the database that served them")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (monitor.isUsable() && !ReplicaRouting.isPrimaryRequired()) {
+            try {
+                Connection connection = obtainTargetDataSource().getConnection();
+                toReplica.increment();
+                return connection;
+            } catch (SQLException e) {
+                monitor.markFailed(e);
+            }
+        }
+        toPrimary.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // Explicit credentials belong to the primary's account
+        toPrimary.increment();
+        return primary.getConnection(username, password);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.loginapp.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Polls the replica's replication lag and decides whether read-only work may use it.
+ * <p>
+ * The replica is used only while its last measured lag is within {@code db.replica.max-lag}; a lagging,
+ * unreachable or failing replica sends reads back to the primary until a later check finds it healthy.
+ * It starts out unusable, so nothing reads a replica that has not been checked yet.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Zero while the replica has replayed everything it received: an idle primary is not lag
+    public static final String POSTGRES_LAG_QUERY = """
+            SELECT CASE
+                     WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                     ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END
+            """;
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+
+    private volatile boolean usable;
+    private volatile double lagSeconds = Double.NaN;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, MeterRegistry meterRegistry) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        meterRegistry.gauge("db.replica.lag", this, monitor -> monitor.lagSeconds);
+        meterRegistry.gauge("db.replica.usable", this, monitor -> monitor.usable ? 1 : 0);
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    @Scheduled(fixedDelayString = "${db.replica.lag-check-interval-ms:5000}")
+    public void check() {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            lagSeconds = rs.next() ? rs.getDouble(1) : Double.NaN;
+            update(lagSeconds <= maxLagSeconds, "lag " + lagSeconds + "s, limit " + maxLagSeconds + "s");
+        } catch (SQLException e) {
+            lagSeconds = Double.NaN;
+            update(false, e.getMessage());
+        }
+    }
+
+    // A replica connection failed outside the scheduled check: stop using it until the next check passes
+    public void markFailed(SQLException e) {
+        update(false, e.getMessage());
+    }
+
+    private void update(boolean nowUsable, String reason) {
+        if (nowUsable == usable) return;
+        usable = nowUsable;
+        if (nowUsable) {
+            log.info("Read replica in use ({})", reason);
+        } else {
+            log.warn("Read replica not used, reads go to the primary ({})", reason);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.loginapp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read replica for read-only work, enabled by setting {@code db.replica.url}.
+ * <p>
+ * The application's DataSource becomes a {@link LazyConnectionDataSourceProxy}: a transaction marked
+ * {@code readOnly} (repository finders, the export, the login lookups) gets its connection from the replica,
+ * everything else from the primary. The physical connection is only fetched once the transaction runs its first
+ * statement, after Spring has flagged it read-only, which is what lets the proxy pick the pool. A replica that
+ * lags more than {@code db.replica.max-lag} or fails is skipped ({@link ReplicaLagMonitor}), and reads that must
+ * see a recent write go to the primary through {@code ReadYourWrites}. Without the property nothing changes:
+ * Spring Boot configures its single pool as before.
+ */
+@Configuration
+@ConditionalOnExpression("!'${db.replica.url:}'.isBlank()")
+public class ReplicaRoutingConfig {
+
+    // spring.datasource.* and spring.datasource.hikari.* keep configuring the primary, as they did before
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("db.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${db.replica.url}") String url,
+                                              @Value("${db.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${db.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    // Pools are injected as DataSource: the query instrumentation wraps them after initialization
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica,
+                                               @Value("${db.replica.lag-query:}") String lagQuery,
+                                               @Value("${db.replica.max-lag:2s}") Duration maxLag,
+                                               MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(replica,
+                lagQuery.isBlank() ? ReplicaLagMonitor.POSTGRES_LAG_QUERY : lagQuery, maxLag, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 MeterRegistry meterRegistry) {
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+        routing.setReadOnlyDataSource(new ReplicaFallbackDataSource(replica, primary, replicaLagMonitor, meterRegistry));
+        return routing;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.loginapp.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Shared outbound HTTP client for all IdP calls (OAuth token/userinfo, discovery, JWKS, ...).
+ * One keep-alive connection pool, bounded per IdP host, instead of a new RestTemplate per callback.
+ */
+@Configuration
+public class SSOHttpClientConfig {
+
+    @Bean
+    public PoolingAsyncClientConnectionManager ssoConnectionManager(
+            @Value("${sso.http.max-connections-per-host:20}") int maxPerHost,
+            @Value("${sso.http.max-connections-total:100}") int maxTotal,
+            @Value("${sso.http.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${sso.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${sso.http.connection-ttl:5m}") Duration connectionTtl) {
+
+        return PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(maxPerHost)
+                .setMaxConnTotal(maxTotal)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(connectionTtl.toMillis()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpAsyncClient ssoHttpAsyncClient(
+            PoolingAsyncClientConnectionManager ssoConnectionManager,
+            @Value("${sso.http.pool-acquire-timeout:1s}") Duration acquireTimeout,
+            @Value("${sso.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${sso.http.keep-alive:30s}") Duration keepAlive,
+            @Value("${sso.http.io-threads:2}") int ioThreads) {
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(ssoConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // How long a request may wait for a pooled connection before failing fast
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquireTimeout.toMillis()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAlive.toMillis()))
+                        .build())
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(ioThreads)
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAlive.toMillis()))
+                .setUserAgent("Mine_App-SSO")
+                .build();
+        client.start();
+        return client;
+    }
+}
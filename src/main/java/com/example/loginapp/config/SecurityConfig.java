@@ -1,21 +1,54 @@
 package com.example.loginapp.config;
 
+import com.example.loginapp.service.BCryptCalibration;
+import com.example.loginapp.service.BoundedPasswordEncoder;
 import com.example.loginapp.service.CustomUserDetailsService;
+import com.example.loginapp.service.LoginAuthenticationProvider;
+import com.example.loginapp.service.LoginMetrics;
+import com.example.loginapp.service.LoginThrottle;
+import com.example.loginapp.service.LoginThrottledException;
+import com.example.loginapp.service.PasswordHashingBusyException;
+import com.example.loginapp.service.SignedCookieSecurityContextRepository;
+import com.example.loginapp.service.UnusablePasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.context.DelegatingSecurityContextRepository;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
 import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 public class SecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
     private final CustomUserDetailsService customUserDetailsService;
 
     public SecurityConfig(CustomUserDetailsService customUserDetailsService) {
@@ -23,9 +56,38 @@ public class SecurityConfig {
     }
 
     // ✅ Password encoder for local login users
+    // Stored as {bcrypt}...; the strength is calibrated to this machine unless pinned with security.password.strength.
+    // Older hashes (bare $2a$ or a lower strength) still match and are rehashed on the next successful login.
+    // BCrypt runs on a bounded pool sized to the cores; overflow fails fast with a 503
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${security.password.strength:0}") int strength,
+            @Value("${security.password.target-latency:50ms}") Duration targetLatency,
+            @Value("${security.password.min-strength:10}") int minStrength,
+            @Value("${security.password.max-strength:14}") int maxStrength,
+            @Value("${security.password.pool-size:0}") int poolSize,
+            @Value("${security.password.queue-capacity:64}") int queueCapacity,
+            @Value("${security.password.max-wait:2s}") Duration maxWait,
+            MeterRegistry meterRegistry) {
+        int bcryptStrength = strength > 0 ? strength
+                : BCryptCalibration.calibrateStrength(targetLatency, minStrength, maxStrength);
+
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of(
+                "bcrypt", bcrypt,
+                UnusablePasswordEncoder.ID, new UnusablePasswordEncoder())); // SSO-only accounts
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt); // hashes saved before the {id} prefix
+
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegating, threads, queueCapacity, maxWait, meterRegistry);
+    }
+
+    // ✅ Form login: throttled per account/IP, checks the password against the stored hash,
+    // then keeps only the slim LoginPrincipal
+    @Bean
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder, LoginThrottle loginThrottle,
+                                                            LoginMetrics loginMetrics) {
+        return new LoginAuthenticationProvider(customUserDetailsService, passwordEncoder, loginThrottle, loginMetrics);
     }
 
     // ✅ Authentication manager for username/password auth
@@ -35,9 +97,33 @@ public class SecurityConfig {
     }
 
     // ✅ NEW: Persist SecurityContext in session (important for JWT callback)
+    // COOKIE mode keeps it in a signed (optionally encrypted) cookie instead: no session state on any node.
+    // All nodes must share security.context.cookie-secret (Base64, at least 32 bytes)
     @Bean
-    public SecurityContextRepository securityContextRepository() {
-        return new HttpSessionSecurityContextRepository();
+    public SecurityContextRepository securityContextRepository(
+            @Value("${security.context.mode:SESSION}") SignedCookieSecurityContextRepository.Mode mode,
+            @Value("${security.context.cookie-name:LOGIN_AUTH}") String cookieName,
+            @Value("${security.context.cookie-secret:}") String cookieSecret,
+            @Value("${security.context.cookie-ttl:8h}") Duration cookieTtl,
+            @Value("${security.context.cookie-encrypt:false}") boolean cookieEncrypt) {
+        if (mode == SignedCookieSecurityContextRepository.Mode.SESSION) {
+            return new HttpSessionSecurityContextRepository();
+        }
+
+        byte[] secret;
+        if (cookieSecret.isBlank()) {
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            log.warn("security.context.cookie-secret is not set: using a random key, logins won't survive a restart "
+                    + "or work across nodes");
+        } else {
+            secret = Base64.getDecoder().decode(cookieSecret.trim());
+        }
+
+        // The request attribute keeps the context for forwards/error dispatches within the same request
+        return new DelegatingSecurityContextRepository(
+                new RequestAttributeSecurityContextRepository(),
+                new SignedCookieSecurityContextRepository(cookieName, secret, cookieTtl, cookieEncrypt));
     }
 
     // ✅ Success handler — redirects based on roles
@@ -55,9 +141,33 @@ public class SecurityConfig {
         };
     }
 
+    // ✅ Failure handler — 429 when throttled, 503 when the password hashing pool is saturated,
+    // otherwise back to the login page
+    @Bean
+    public AuthenticationFailureHandler customFailureHandler() {
+        var loginError = new SimpleUrlAuthenticationFailureHandler("/login?error");
+        return (request, response, exception) -> {
+            if (exception instanceof LoginThrottledException throttled) {
+                response.setHeader("Retry-After", String.valueOf(throttled.getRetryAfterSeconds()));
+                response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), exception.getMessage());
+                return;
+            }
+            if (exception instanceof PasswordHashingBusyException) {
+                response.setHeader("Retry-After", "1");
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), exception.getMessage());
+                return;
+            }
+            loginError.onAuthenticationFailure(request, response, exception);
+        };
+    }
+
     // ✅ Main security configuration
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+            HttpSecurity http,
+            SecurityContextRepository securityContextRepository,
+            @Value("${security.context.mode:SESSION}") SignedCookieSecurityContextRepository.Mode contextMode,
+            @Value("${security.prometheus.allowed-addresses:127.0.0.1,::1}") List<String> scrapeAddresses) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
@@ -70,12 +180,15 @@ public class SecurityConfig {
                                 "/js/**",
                                 "/images/**"
                         ).permitAll()
+                        // ✅ Prometheus scrapes without a login, but only from the configured addresses
+                        .requestMatchers("/actuator/prometheus").access(fromAddresses(scrapeAddresses))
                         .requestMatchers("/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .formLogin(form -> form
                         .loginPage("/login")
                         .successHandler(customSuccessHandler()) // ✅ Role-based redirect
+                        .failureHandler(customFailureHandler())
                         .permitAll()
                 )
                 .logout(logout -> logout
@@ -84,8 +197,20 @@ public class SecurityConfig {
                         .permitAll()
                 )
                 // ✅ Persist SecurityContext across redirects (fixes your issue)
-                .securityContext(context -> context.securityContextRepository(securityContextRepository()));
+                .securityContext(context -> context.securityContextRepository(securityContextRepository))
+                // Cookie mode: Spring Security never creates a session (no saved request either)
+                .sessionManagement(session -> session.sessionCreationPolicy(
+                        contextMode == SignedCookieSecurityContextRepository.Mode.COOKIE
+                                ? SessionCreationPolicy.STATELESS
+                                : SessionCreationPolicy.IF_REQUIRED));
 
         return http.build();
     }
+
+    // Client address (or CIDR range) allow-list, for machine endpoints that can't log in
+    private static AuthorizationManager<RequestAuthorizationContext> fromAddresses(List<String> addresses) {
+        List<IpAddressMatcher> matchers = addresses.stream().map(String::trim).map(IpAddressMatcher::new).toList();
+        return (authentication, context) -> new AuthorizationDecision(
+                matchers.stream().anyMatch(matcher -> matcher.matches(context.getRequest())));
+    }
 }
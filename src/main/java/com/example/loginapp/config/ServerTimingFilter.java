@@ -0,0 +1,155 @@
+package com.example.loginapp.config;
+
+import com.example.loginapp.service.RequestTimings;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+
+/**
+ * Per-request phase breakdown for {@code /login}, {@code /register} and {@code /sso/**}.
+ * <p>
+ * The phases {@link com.example.loginapp.service.LoginMetrics} times (config lookup, credentials, signature,
+ * IdP calls, provisioning) go out in a {@code Server-Timing} header, so browser devtools show where a slow
+ * login spent its time. The header is set just before the first body byte (or redirect), so it covers
+ * everything up to the view; template rendering only shows up in the log. A request slower than the threshold
+ * logs one logfmt line with the full breakdown, including rendering.
+ * <p>
+ * Runs ahead of Spring Security, so form login (handled inside the security filter chain) is covered too.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+    private static final String TIMINGS_ATTRIBUTE = RequestTimings.class.getName();
+
+    private final boolean headerEnabled;
+    private final long slowThresholdNanos;
+
+    public ServerTimingFilter(@Value("${login.timing.server-timing-header:true}") boolean headerEnabled,
+                              @Value("${login.timing.slow-threshold:1s}") Duration slowThreshold) {
+        this.headerEnabled = headerEnabled;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.equals("/login") || path.equals("/register") || path.startsWith("/sso/"));
+    }
+
+    // The async OAuth callback renders its view on a second (async) dispatch
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTimings timings = (RequestTimings) request.getAttribute(TIMINGS_ATTRIBUTE);
+        if (timings == null) {
+            timings = new RequestTimings(System.nanoTime());
+            request.setAttribute(TIMINGS_ATTRIBUTE, timings);
+        }
+
+        TimingResponse timedResponse = new TimingResponse(response, timings);
+        RequestTimings.bind(timings);
+        try {
+            chain.doFilter(request, timedResponse);
+        } finally {
+            RequestTimings.unbind();
+            if (!isAsyncStarted(request)) {
+                timedResponse.writeServerTiming(); // responses without a body (304, empty 200)
+                logIfSlow(request, response, timings, timedResponse.bodyStartNanos);
+            }
+        }
+    }
+
+    private void logIfSlow(HttpServletRequest request, HttpServletResponse response, RequestTimings timings,
+                           long bodyStartNanos) {
+        long now = System.nanoTime();
+        long total = now - timings.startNanos();
+        if (total < slowThresholdNanos || !log.isWarnEnabled()) return;
+
+        // The mapped pattern rather than the URI: the JWT callback can carry the token in its path
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = pattern != null ? pattern.toString()
+                : request.getRequestURI().substring(request.getContextPath().length());
+        log.warn("Slow auth request method={} path={} status={} total_ms={} render_ms={} {}",
+                request.getMethod(), path, response.getStatus(), RequestTimings.millis(total),
+                RequestTimings.millis(bodyStartNanos == 0 ? 0 : now - bodyStartNanos), timings.phaseBreakdown());
+    }
+
+    // Adds Server-Timing the moment the response is about to be committed
+    private final class TimingResponse extends HttpServletResponseWrapper {
+
+        private final RequestTimings timings;
+        private long bodyStartNanos;
+
+        TimingResponse(HttpServletResponse response, RequestTimings timings) {
+            super(response);
+            this.timings = timings;
+        }
+
+        void writeServerTiming() {
+            if (bodyStartNanos != 0) return;
+            bodyStartNanos = System.nanoTime();
+            if (headerEnabled && !isCommitted()) {
+                setHeader("Server-Timing", timings.serverTiming(bodyStartNanos));
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeServerTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeServerTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeServerTiming();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            writeServerTiming();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            writeServerTiming();
+            super.sendError(status);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeServerTiming();
+            super.flushBuffer();
+        }
+    }
+}
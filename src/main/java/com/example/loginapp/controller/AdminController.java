@@ -4,11 +4,37 @@ import com.example.loginapp.model.SSOConfig;
 import com.example.loginapp.model.User;
 import com.example.loginapp.repository.SSOConfigRepository;
 import com.example.loginapp.repository.UserRepository;
+import com.example.loginapp.model.UserPage;
+import com.example.loginapp.service.QueryStatistics;
+import com.example.loginapp.service.ReadYourWrites;
+import com.example.loginapp.service.ReplicaRouting;
+import com.example.loginapp.service.SSOConfigProvider;
+import com.example.loginapp.service.UserCountCache;
+import com.example.loginapp.service.UserExportService;
+import com.example.loginapp.service.UserLookupCache;
+import com.example.loginapp.service.UserProvisioningService;
+import com.example.loginapp.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
 @Controller
 public class AdminController {
 
@@ -18,14 +44,110 @@ public class AdminController {
     @Autowired
     private SSOConfigRepository ssoConfigRepository;
 
-    // ✅ Admin Dashboard – view all users + total count
+    @Autowired
+    private SSOConfigProvider ssoConfigProvider;
+
+    @Autowired
+    private UserLookupCache userLookupCache;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private UserProvisioningService userProvisioningService;
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private UserCountCache userCountCache;
+
+    // Read-your-writes key for the user listing: an admin sees their own changes on the next page load
+    private static final String USERS_LISTING = "admin:users";
+
+    @Value("${admin.users.page-size:50}")
+    private int pageSize;
+
+    // ✅ Admin Dashboard – one keyset page of users (filterable) + total count
     @GetMapping("/admin/dashboard")
-    public String adminDashboard(Model model) {
-        model.addAttribute("users", userRepository.findAll());
-        model.addAttribute("totalUsers", userRepository.count());
+    public String adminDashboard(@RequestParam(required = false) String username,
+                                 @RequestParam(required = false) String email,
+                                 @RequestParam(required = false) String role,
+                                 @RequestParam(required = false) Long after,
+                                 @RequestParam(required = false) Long before,
+                                 Model model) {
+        UserPage page = readYourWrites.read(USERS_LISTING,
+                () -> userService.listUsers(username, email, role, after, before, pageSize));
+
+        model.addAttribute("users", page.users());
+        model.addAttribute("page", page);
+        model.addAttribute("username", username);
+        model.addAttribute("email", email);
+        model.addAttribute("role", role);
+        model.addAttribute("totalUsers", userCountCache.get());
         return "admin";
     }
 
+    // ✅ Export users as CSV or NDJSON, streamed from a DB cursor straight into the response
+    // Dates are inclusive UTC days (?from=2025-01-01&to=2025-01-31); gzip=true sends a .gz file
+    @GetMapping("/admin/users/export")
+    public void exportUsers(@RequestParam(defaultValue = "csv") String format,
+                            @RequestParam(required = false) String role,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                            @RequestParam(defaultValue = "false") boolean gzip,
+                            HttpServletResponse response) throws IOException {
+        UserExportService.Format exportFormat = "ndjson".equalsIgnoreCase(format)
+                ? UserExportService.Format.NDJSON : UserExportService.Format.CSV;
+        String roleFilter = role == null || role.isBlank() ? null : role.trim().toUpperCase(Locale.ROOT);
+        Instant createdFrom = from == null ? null : from.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant createdBefore = to == null ? null : to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+
+        String filename = exportFormat == UserExportService.Format.NDJSON ? "users.ndjson" : "users.csv";
+        String contentType = exportFormat == UserExportService.Format.NDJSON ? "application/x-ndjson" : "text/csv";
+        if (gzip) {
+            filename += ".gz";
+            contentType = "application/gzip";
+        } else {
+            contentType += ";charset=UTF-8";
+        }
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString());
+
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(out, 64 * 1024)) {
+                userExportService.export(exportFormat, roleFilter, createdFrom, createdBefore, gzipOut);
+            }
+        } else {
+            userExportService.export(exportFormat, roleFilter, createdFrom, createdBefore, out);
+        }
+    }
+
+    // ✅ Bulk joiners/leavers (HR feed): JSON array or NDJSON of users in, one NDJSON result line per user out
+    @PostMapping("/admin/users/bulk")
+    public void bulkProvision(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        try {
+            userProvisioningService.provision(request.getInputStream(), response.getOutputStream());
+        } finally {
+            readYourWrites.wrote(USERS_LISTING);
+        }
+    }
+
+    // ✅ Slowest SQL statements since startup (worst time, call count, average, bind-parameter shape)
+    @GetMapping(value = "/admin/queries", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<QueryStatistics.Summary> slowestQueries(@RequestParam(defaultValue = "20") int limit) {
+        return queryStatistics.slowest(Math.max(1, Math.min(limit, 500)));
+    }
+
     // ✅ Load SSO Settings page (JWT + OAuth)
     @GetMapping("/admin/sso-settings")
     public String ssoSettings(Model model) {
@@ -44,8 +166,8 @@ public class AdminController {
             config.setId(ssoConfigRepository.findTopByOrderByIdDesc().getId());
         }
 
-        // Save updated settings (includes both JWT + OAuth)
-        ssoConfigRepository.save(config);
+        // Save updated settings (includes both JWT + OAuth) and swap the cached snapshot
+        ssoConfigProvider.save(config);
         return "redirect:/admin/sso-settings?saved=true";
     }
 
@@ -61,6 +183,9 @@ public class AdminController {
         user.setUsername(username);
         user.setPassword(password);
         userRepository.save(user);
+        userLookupCache.evict(user); // drops a cached "unknown user" for the new identities
+        userCountCache.evict();
+        readYourWrites.wrote(USERS_LISTING);
         return "redirect:/admin/dashboard";
     }
 
@@ -69,11 +194,15 @@ public class AdminController {
     public String updateUser(@PathVariable Long id,
                              @RequestParam String name,
                              @RequestParam String email) {
-        var user = userRepository.findById(id).orElse(null);
+        // Read-modify-write: load on the primary so a lagging replica cannot hand back a stale row to save
+        var user = ReplicaRouting.onPrimary(() -> userRepository.findById(id).orElse(null));
         if (user != null) {
+            String previousEmail = user.getEmail();
             user.setName(name);
             user.setEmail(email);
             userRepository.save(user);
+            userLookupCache.evict(user.getUsername(), previousEmail, email);
+            readYourWrites.wrote(USERS_LISTING);
         }
         return "redirect:/admin/dashboard";
     }
@@ -81,7 +210,12 @@ public class AdminController {
     // ✅ Delete user
     @GetMapping("/admin/delete/{id}")
     public String deleteUser(@PathVariable Long id) {
-        userRepository.deleteById(id);
+        ReplicaRouting.onPrimary(() -> userRepository.findById(id)).ifPresent(user -> {
+            userRepository.delete(user);
+            userLookupCache.evict(user);
+            userCountCache.evict();
+            readYourWrites.wrote(USERS_LISTING);
+        });
         return "redirect:/admin/dashboard";
     }
 }
@@ -1,64 +1,38 @@
 package com.example.loginapp.controller;
 
-import com.example.loginapp.model.User;
-import com.example.loginapp.model.LoginConfig;
-import com.example.loginapp.repository.LoginConfigRepository;
-import com.example.loginapp.service.UserService;
+import com.example.loginapp.service.LoginPageCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+
 @Controller
 public class LoginController {
 
     @Autowired
-    private UserService userService;
+    private LoginPageCache loginPageCache;
 
-    @Autowired
-    private LoginConfigRepository loginConfigRepository;
+    // POST /login is handled by Spring Security's form login (see SecurityConfig), before any controller
 
     /**
      * ✅ Display Login Page (with SSO configuration flags)
+     * Served pre-rendered per login config version; If-None-Match requests get a 304.
      */
     @GetMapping("/login")
-    public String showLoginPage(Model model) {
-        LoginConfig config = loginConfigRepository.findAll()
-                .stream()
-                .findFirst()
-                .orElseGet(() -> {
-                    LoginConfig defaultConfig = new LoginConfig();
-                    defaultConfig.setJwtEnabled(true);
-                    defaultConfig.setSamlEnabled(false);
-                    defaultConfig.setOauthEnabled(false);
-                    return defaultConfig;
-                });
-
-        model.addAttribute("loginConfig", config);
-        return "login";
-    }
-
-    /**
-     * ✅ Username/Password Login Authentication
-     */
-    @PostMapping("/login")
-    public String login(@RequestParam("username") String loginInput,
-                        @RequestParam("password") String password,
-                        Model model) {
-
-        User user = userService.findByUsernameOrEmail(loginInput).orElse(null);
-
-        if (user == null || !userService.passwordMatches(password, user.getPassword())) {
-            model.addAttribute("error", "Invalid username/email or password");
-            return "login";
-        }
-
-        // ✅ Role-based redirection
-        if ("ADMIN".equalsIgnoreCase(user.getRole())) {
-            return "redirect:/admin/dashboard";
-        } else {
-            return "redirect:/"; // non-admin users
-        }
+    public ResponseEntity<byte[]> showLoginPage(HttpServletRequest request, HttpServletResponse response) {
+        LoginPageCache.RenderedPage page = loginPageCache.get(request, response);
+
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .cacheControl(CacheControl.noCache())
+                .eTag(page.etag())
+                .body(page.body());
     }
 
     /**
@@ -1,126 +1,190 @@
 package com.example.loginapp.controller;
 
-import com.example.loginapp.model.SSOConfig;
-import com.example.loginapp.repository.SSOConfigRepository;
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.example.loginapp.model.User;
+import com.example.loginapp.service.LoginMetrics;
+import com.example.loginapp.service.OAuthLoginService;
+import com.example.loginapp.service.SSOConfigProvider;
+import com.example.loginapp.service.SSOLoginState;
+import com.example.loginapp.service.SSOUserProvisioner;
+import com.example.loginapp.service.SignInService;
+import com.example.loginapp.service.UnverifiedEmailException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.*;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.client.RestTemplate;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 @Controller
 public class OAuthController {
 
+    private static final Logger log = LoggerFactory.getLogger(OAuthController.class);
+
+    @Autowired
+    private SSOConfigProvider configProvider;
+
+    @Autowired
+    private OAuthLoginService oauthLoginService;
+
+    @Autowired
+    private SSOUserProvisioner ssoUserProvisioner;
+
+    @Autowired
+    private SignInService signInService;
+
+    @Autowired
+    private SSOLoginState ssoLoginState;
+
+    @Autowired
+    private LoginMetrics loginMetrics;
+
+    // Runs the (blocking) JIT provisioning upsert off the HTTP client's I/O threads
     @Autowired
-    private SSOConfigRepository configRepository;
+    @Qualifier("applicationTaskExecutor")
+    private Executor taskExecutor;
+
+    @Value("${sso.oauth.callback-mode:ASYNC}")
+    private OAuthLoginService.CallbackMode callbackMode;
 
     // Step 1: Redirect to miniOrange Authorization URL
     @GetMapping("/sso/oauth/login")
-    public String oauthLogin() {
-        Optional<SSOConfig> optionalConfig = configRepository.findAll().stream().findFirst();
-        if (optionalConfig.isEmpty()) return "redirect:/admin/sso-settings";
-
-        SSOConfig config = optionalConfig.get();
+    public String oauthLogin(HttpServletRequest request, HttpServletResponse response) {
+        SSOConfigSnapshot config = configProvider.current();
+        if (!config.isConfigured()) return "redirect:/admin/sso-settings";
 
-        if (!config.isOauthEnabled()) {
+        if (!config.oauthEnabled()) {
             return "redirect:/admin/sso-settings";
         }
 
-        String authorizeUrl = config.getOauthUrl() + "?response_type=code"
-                + "&client_id=" + config.getOauthClientId()
-                + "&redirect_uri=" + URLEncoder.encode(config.getOauthRedirectUri(), StandardCharsets.UTF_8)
-                + "&scope=openid%20profile%20email";
+        // ✅ state and nonce are remembered in this browser; the callback must bring them back
+        SSOLoginState.OAuthRequest started = ssoLoginState.startOAuth(request, response);
+        String authorizeUrl = config.oauthUrl() + "?response_type=code"
+                + "&client_id=" + config.oauthClientId()
+                + "&redirect_uri=" + URLEncoder.encode(config.oauthRedirectUri(), StandardCharsets.UTF_8)
+                + "&scope=openid%20profile%20email"
+                + "&state=" + started.state()
+                + "&nonce=" + started.nonce();
 
         return "redirect:" + authorizeUrl;
     }
 
     // Step 2: Handle Callback - Exchange code for token
+    // In ASYNC mode the servlet thread is released while the IdP round trips are in flight
     @GetMapping("/sso/oauth/callback")
-    public String oauthCallback(@RequestParam(required = false) String code,
-                                @RequestParam(required = false) String error,
-                                Model model) {
+    public CompletableFuture<String> oauthCallback(@RequestParam(required = false) String code,
+                                                   @RequestParam(required = false) String state,
+                                                   @RequestParam(required = false) String error,
+                                                   Model model,
+                                                   HttpServletRequest request,
+                                                   HttpServletResponse response) {
+        LoginMetrics.Attempt attempt = loginMetrics.start(LoginMetrics.Flow.OAUTH);
+        // ✅ Only a login this browser started may finish here (single use, checked before anything else)
+        String nonce = ssoLoginState.finishOAuth(request, response, state);
         if (error != null) {
+            attempt.failure("idp_error");
+            attempt.close();
             model.addAttribute("error", "OAuth Error: " + error);
-            return "error";
+            return CompletableFuture.completedFuture("error");
         }
 
-        Optional<SSOConfig> optionalConfig = configRepository.findAll().stream().findFirst();
-        if (optionalConfig.isEmpty()) {
+        SSOConfigSnapshot config = attempt.time(LoginMetrics.Phase.CONFIG_LOOKUP, configProvider::current);
+        if (!config.isConfigured()) {
+            attempt.failure("not_configured");
+            attempt.close();
             model.addAttribute("error", "OAuth configuration not found");
-            return "error";
+            return CompletableFuture.completedFuture("error");
+        }
+        if (!config.oauthEnabled()) {
+            attempt.failure("not_enabled");
+            attempt.close();
+            model.addAttribute("error", "OAuth login is not enabled.");
+            return CompletableFuture.completedFuture("error");
+        }
+        if (nonce == null) {
+            attempt.failure("invalid_state");
+            attempt.close();
+            model.addAttribute("error", "OAuth login was not started in this browser or has expired. Please try again.");
+            return CompletableFuture.completedFuture("error");
         }
 
-        SSOConfig config = optionalConfig.get();
+        if (callbackMode == OAuthLoginService.CallbackMode.ASYNC) {
+            // The attempt is recorded when the last stage completes, not when this method returns
+            return oauthLoginService.exchangeCodeAsync(config, code, nonce)
+                    .thenApplyAsync(userInfo -> provisionUser(attempt, userInfo, request, response), taskExecutor)
+                    .handle((userInfo, ex) -> {
+                        attempt.close();
+                        return ex == null ? showUserInfo(model, userInfo) : showError(model, ex);
+                    });
+        }
 
         try {
-            RestTemplate restTemplate = new RestTemplate();
-
-            // Token Exchange Request
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-
-            String body = "grant_type=authorization_code"
-                    + "&code=" + code
-                    + "&redirect_uri=" + URLEncoder.encode(config.getOauthRedirectUri(), StandardCharsets.UTF_8)
-                    + "&client_id=" + config.getOauthClientId()
-                    + "&client_secret=" + config.getOauthClientSecret();
-
-            HttpEntity<String> request = new HttpEntity<>(body, headers);
-
-            ResponseEntity<String> tokenResponse = restTemplate.exchange(
-                    config.getOauthTokenUrl(),
-                    HttpMethod.POST,
-                    request,
-                    String.class
-            );
-
-            JSONObject tokenJson = new JSONObject(tokenResponse.getBody());
-            String accessToken = tokenJson.getString("access_token");
-
-            // Fetch user info
-            HttpHeaders userHeaders = new HttpHeaders();
-            userHeaders.setBearerAuth(accessToken);
-            HttpEntity<Void> userRequest = new HttpEntity<>(userHeaders);
-
-            ResponseEntity<String> userResponse = restTemplate.exchange(
-                    config.getOauthUserInfoUrl(),
-                    HttpMethod.GET,
-                    userRequest,
-                    String.class
-            );
-
-            JSONObject userInfo = new JSONObject(userResponse.getBody());
+            JSONObject userInfo = provisionUser(attempt, oauthLoginService.exchangeCode(config, code, nonce), request, response);
+            return CompletableFuture.completedFuture(showUserInfo(model, userInfo));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(showError(model, e));
+        } finally {
+            attempt.close();
+        }
+    }
 
-            model.addAttribute("name", userInfo.optString("name"));
-            model.addAttribute("email", userInfo.optString("email"));
-            model.addAttribute("userInfo", userInfo.toString(4));
+    // ✅ JIT-provision the account for the IdP-verified email and sign it in; no email, no login
+    private JSONObject provisionUser(LoginMetrics.Attempt attempt, JSONObject userInfo,
+                                     HttpServletRequest request, HttpServletResponse response) {
+        String email = userInfo.optString("email");
+        if (email.isBlank()) {
+            attempt.failure("missing_email");
+            throw new IllegalStateException("The identity provider did not return an email address");
+        }
+        // An existing account is only linked when the IdP verified the email
+        boolean emailVerified = userInfo.optBoolean("email_verified", false);
+        User user;
+        try {
+            user = attempt.time(LoginMetrics.Phase.PROVISIONING,
+                    () -> ssoUserProvisioner.provision(email, userInfo.optString("name"), emailVerified));
+        } catch (UnverifiedEmailException e) {
+            attempt.failure("email_not_verified");
+            throw e;
+        }
+        signInService.signIn(user, request, response);
+        attempt.success();
+        return userInfo;
+    }
 
-            return "home";
+    private String showUserInfo(Model model, JSONObject userInfo) {
+        model.addAttribute("name", userInfo.optString("name"));
+        model.addAttribute("email", userInfo.optString("email"));
+        model.addAttribute("userInfo", userInfo.toString(4));
+        return "home";
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            model.addAttribute("error", "OAuth Exception: " + e.getMessage());
-            return "error";
-        }
+    private String showError(Model model, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        log.warn("OAuth callback failed", cause);
+        model.addAttribute("error", "OAuth Exception: " + cause.getMessage());
+        return "error";
     }
 
     // ✅ Optional: A test endpoint to verify configuration
     @GetMapping("/sso/oauth/test")
     public String testOAuthSettings(Model model) {
-        Optional<SSOConfig> optionalConfig = configRepository.findAll().stream().findFirst();
-        if (optionalConfig.isEmpty()) {
+        SSOConfigSnapshot config = configProvider.current();
+        if (!config.isConfigured()) {
             model.addAttribute("error", "No OAuth configuration found!");
             return "error";
         }
-
-        SSOConfig config = optionalConfig.get();
         model.addAttribute("config", config);
         return "login";
     }
@@ -0,0 +1,27 @@
+package com.example.loginapp.controller;
+
+import com.example.loginapp.service.PasswordHashingBusyException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Turns a saturated password hashing pool into a 503 with Retry-After, re-showing the form the user
+ * came from (login or register) instead of a stack trace.
+ */
+@ControllerAdvice
+public class PasswordHashingBusyHandler {
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ModelAndView busy(HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader("Retry-After", "1");
+
+        String view = request.getRequestURI().startsWith(request.getContextPath() + "/register") ? "register" : "login";
+        ModelAndView mav = new ModelAndView(view, HttpStatus.SERVICE_UNAVAILABLE);
+        mav.addObject("error", "The server is busy right now. Please try again in a moment.");
+        return mav;
+    }
+}
@@ -43,6 +43,7 @@
 package com.example.loginapp.controller;
 
 import com.example.loginapp.model.User;
+import com.example.loginapp.service.LoginMetrics;
 import com.example.loginapp.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -55,6 +56,9 @@ public class RegisterController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private LoginMetrics loginMetrics;
+
     @GetMapping("/register")
     public String showRegisterPage() {
         return "register";
@@ -67,24 +71,31 @@ public class RegisterController {
                            @RequestParam("name") String name,
                            Model model) {
 
-        // ✅ Check if user already exists by username or email
-        User existingUser = userService.findByUsernameOrEmail(username).orElse(null);
-        if (existingUser != null) {
-            model.addAttribute("error", "Username or Email already exists!");
-            return "register";
-        }
+        try (LoginMetrics.Attempt attempt = loginMetrics.start(LoginMetrics.Flow.REGISTER)) {
+            // ✅ Check if user already exists by username or email (case-insensitive)
+            User existingUser = attempt.time(LoginMetrics.Phase.USER_LOOKUP,
+                    () -> userService.findByUsernameOrEmail(username)
+                            .or(() -> userService.findByUsernameOrEmail(email))
+                            .orElse(null));
+            if (existingUser != null) {
+                attempt.failure("already_exists");
+                model.addAttribute("error", "Username or Email already exists!");
+                return "register";
+            }
 
-        // ✅ Create new user with default role = USER
-        User newUser = new User();
-        newUser.setUsername(username);
-        newUser.setEmail(email);
-        newUser.setPassword(password);
-        newUser.setName(name);
-        newUser.setRole("USER"); // 🟢 Default role
+            // ✅ Create new user with default role = USER
+            User newUser = new User();
+            newUser.setUsername(username);
+            newUser.setEmail(email);
+            newUser.setPassword(password);
+            newUser.setName(name);
+            newUser.setRole("USER"); // 🟢 Default role
 
-        userService.saveUser(newUser);
+            userService.saveUser(newUser); // BCrypt and insert are timed as separate phases
+            attempt.success();
 
-        model.addAttribute("message", "Registration successful! Please login.");
-        return "login";
+            model.addAttribute("message", "Registration successful! Please login.");
+            return "login";
+        }
     }
 }
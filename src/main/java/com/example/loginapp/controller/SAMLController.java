@@ -1,80 +1,98 @@
 package com.example.loginapp.controller;
 
-import java.io.ByteArrayOutputStream;
-import java.io.StringWriter;
-import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
 
-
-import com.example.loginapp.model.SSOConfig;
-import com.example.loginapp.repository.SSOConfigRepository;
+import com.example.loginapp.model.SAMLAssertion;
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.example.loginapp.model.User;
+import com.example.loginapp.service.LoginMetrics;
+import com.example.loginapp.service.SAMLArtifactCache;
+import com.example.loginapp.service.SAMLReplayGuard;
+import com.example.loginapp.service.SAMLResponseException;
+import com.example.loginapp.service.SAMLResponseReader;
+import com.example.loginapp.service.SAMLSignatureVerifier;
+import com.example.loginapp.service.SSOConfigProvider;
+import com.example.loginapp.service.SSOLoginState;
+import com.example.loginapp.service.SSOUserProvisioner;
+import com.example.loginapp.service.SignInService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.w3c.dom.Document;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.util.Base64;
+
+import java.time.Duration;
+import java.time.Instant;
 
 @Controller
 @RequestMapping("/sso/saml")
 public class SAMLController {
 
+    private static final Logger log = LoggerFactory.getLogger(SAMLController.class);
+
+    @Autowired
+    private SSOConfigProvider ssoConfigProvider;
+
+    @Autowired
+    private SSOUserProvisioner ssoUserProvisioner;
+
+    @Autowired
+    private SAMLSignatureVerifier samlSignatureVerifier;
+
+    @Autowired
+    private SAMLArtifactCache samlArtifactCache;
+
+    @Autowired
+    private SAMLReplayGuard samlReplayGuard;
+
+    @Autowired
+    private SSOLoginState ssoLoginState;
+
+    @Autowired
+    private SignInService signInService;
+
     @Autowired
-    private SSOConfigRepository ssoConfigRepository;
+    private LoginMetrics loginMetrics;
+
+    @Value("${sso.saml.clock-skew:60s}")
+    private Duration clockSkew;
+
+    @Value("${sso.saml.require-signature:true}")
+    private boolean requireSignature;
+
+    @Value("${sso.saml.metadata-max-age:1h}")
+    private Duration metadataMaxAge;
 
     /**
      * Redirects the user to miniOrange IdP login page.
      */
     @GetMapping("/login")
-    public String samlLogin(HttpServletRequest request) {
+    public String samlLogin(HttpServletRequest request, HttpServletResponse response) {
         try {
-            SSOConfig config = ssoConfigRepository.findTopByOrderByIdDesc();
-            if (config == null || !config.isSamlEnabled() || config.getSamlUrl() == null) {
+            SSOConfigSnapshot config = ssoConfigProvider.current();
+            if (!config.samlEnabled() || config.samlUrl() == null) {
                 return "redirect:/error?message=SAML not configured";
             }
 
-            // Base URL (your app)
-            String baseUrl = request.getRequestURL().toString()
-                    .replace(request.getRequestURI(), request.getContextPath());
-
-            String acsUrl = baseUrl + "/sso/saml/callback";
-            String issuer = baseUrl + "/sso/saml/metadata";
-
-            // 🧩 Build AuthnRequest XML
-            String authnRequest = """
-                <samlp:AuthnRequest xmlns:samlp="urn:oasis:names:tc:SAML:2.0:protocol"
-                    ID="_12345"
-                    Version="2.0"
-                    IssueInstant="2025-10-31T12:00:00Z"
-                    ProtocolBinding="urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST"
-                    AssertionConsumerServiceURL="%s">
-                    <saml:Issuer xmlns:saml="urn:oasis:names:tc:SAML:2.0:assertion">%s</saml:Issuer>
-                    <samlp:NameIDPolicy AllowCreate="true"
-                        Format="urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress"/>
-                </samlp:AuthnRequest>
-                """.formatted(acsUrl, issuer);
-
-            // 🗜️ Deflate + Base64 encode
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            Deflater deflater = new Deflater(Deflater.DEFLATED, true);
-            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(byteArrayOutputStream, deflater);
-            deflaterStream.write(authnRequest.getBytes(StandardCharsets.UTF_8));
-            deflaterStream.close();
-
-            String samlRequest = Base64.getEncoder().encodeToString(byteArrayOutputStream.toByteArray());
-            String encodedRequest = URLEncoder.encode(samlRequest, StandardCharsets.UTF_8);
+            // 🧩 Pre-rendered AuthnRequest with a fresh ID and IssueInstant, deflated + Base64 + URL-encoded
+            SAMLArtifactCache.AuthnRequest authnRequest = samlArtifactCache.authnRequest();
+            ssoLoginState.startSaml(request, response, authnRequest.id()); // the response's InResponseTo must match it
+            String encodedRequest = authnRequest.samlRequest();
 
             // 🔗 Redirect to IdP with SAMLRequest param
-            String redirectUrl = config.getSamlUrl() + "?SAMLRequest=" + encodedRequest;
+            String redirectUrl = config.samlUrl() + "?SAMLRequest=" + encodedRequest;
 
             return "redirect:" + redirectUrl;
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("SAML login redirect failed", e);
             return "redirect:/error?message=" + e.getMessage();
         }
     }
@@ -85,74 +103,142 @@ public class SAMLController {
      */
     @PostMapping("/callback")
     public String samlCallback(@RequestParam(value = "SAMLResponse", required = false) String samlResponse,
-                               Model model) {
-        try {
-            if (samlResponse == null || samlResponse.isEmpty()) {
-                model.addAttribute("error", "No SAML Response received.");
+                               Model model, HttpServletRequest request, HttpServletResponse response) {
+        try (LoginMetrics.Attempt attempt = loginMetrics.start(LoginMetrics.Flow.SAML)) {
+            try {
+                // Single use: cleared whatever the outcome
+                String requestId = ssoLoginState.finishSaml(request, response);
+
+                if (samlResponse == null || samlResponse.isEmpty()) {
+                    attempt.failure("missing_response");
+                    model.addAttribute("error", "No SAML Response received.");
+                    return "error";
+                }
+
+                // ✅ Turning SAML off in the SSO settings stops sign-ins, not just the login button
+                SSOConfigSnapshot config = attempt.time(LoginMetrics.Phase.CONFIG_LOOKUP, ssoConfigProvider::current);
+                if (!config.samlEnabled()) {
+                    attempt.failure("not_enabled");
+                    model.addAttribute("error", "SAML login is not enabled.");
+                    return "error";
+                }
+
+                // Decode + parse in one streaming pass (status, NameID, conditions, attributes)
+                byte[] xml = SAMLResponseReader.decode(samlResponse);
+                SAMLAssertion assertion = SAMLResponseReader.read(xml);
+
+                // ✅ Check the IdP signature (key material is cached per SSO config version)
+                if (requireSignature || samlSignatureVerifier.isConfigured(config)) {
+                    attempt.time(LoginMetrics.Phase.SIGNATURE, () -> {
+                        samlSignatureVerifier.verify(config, xml, assertion);
+                        return null;
+                    });
+                }
+
+                // ✅ A response signed with the IdP's key must also name that IdP as its issuer
+                if (!assertion.isIssuedBy(config.samlIdpEntityId())) {
+                    attempt.failure("wrong_issuer");
+                    model.addAttribute("error", "SAML response was not issued by the configured identity provider.");
+                    return "error";
+                }
+
+                if (!assertion.isSuccess()) {
+                    attempt.failure("idp_status");
+                    model.addAttribute("error", "SAML login failed: " + assertion.statusCode());
+                    return "error";
+                }
+                if (!assertion.isValidAt(Instant.now(), clockSkew)) {
+                    attempt.failure("expired");
+                    model.addAttribute("error", "SAML assertion has expired or is not yet valid.");
+                    return "error";
+                }
+                // ✅ Issued for this SP: the configured entity ID and ACS URL, never ones derived from the Host header
+                if (!assertion.isIntendedFor(samlArtifactCache.entityId())) {
+                    attempt.failure("wrong_audience");
+                    model.addAttribute("error", "SAML assertion was issued for another service provider.");
+                    return "error";
+                }
+                if (!assertion.isDestinedFor(samlArtifactCache.acsUrl())) {
+                    attempt.failure("wrong_destination");
+                    model.addAttribute("error", "SAML response was not sent to this application.");
+                    return "error";
+                }
+                // ✅ One use per assertion; SP-initiated responses must answer the request this browser started
+                samlReplayGuard.accept(assertion, requestId);
+
+                // Extract user info (NameID / Email)
+                String nameId = assertion.nameId();
+
+                if (nameId == null || nameId.isEmpty()) {
+                    attempt.failure("missing_nameid");
+                    model.addAttribute("error", "Invalid SAML response: NameID not found.");
+                    return "error";
+                }
+
+                // ✅ Accounts are keyed by email: a NameID that isn't one signs no one in
+                if (nameId.indexOf('@') <= 0) {
+                    attempt.failure("nameid_not_email");
+                    model.addAttribute("error", "Invalid SAML response: NameID is not an email address.");
+                    return "error";
+                }
+
+                // ✅ JIT-provision the account (NameID format is emailAddress) and sign it in
+                User user = attempt.time(LoginMetrics.Phase.PROVISIONING,
+                        () -> ssoUserProvisioner.provision(nameId, displayName(assertion)));
+                signInService.signIn(user, request, response);
+                attempt.success();
+
+                // ✅ Successful login
+                model.addAttribute("userEmail", nameId);
+                model.addAttribute("message", "SAML Login Successful!");
+                return "home"; // Or redirect to dashboard.html
+
+            } catch (SAMLResponseException e) {
+                attempt.failure("invalid_response");
+                model.addAttribute("error", "Invalid SAML response: " + e.getMessage());
                 return "error";
-            }
-
-            // Decode Base64 SAML Response
-            byte[] decodedBytes = Base64.getDecoder().decode(samlResponse);
-            String xml = new String(decodedBytes);
-
-            // Parse XML
-            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
-                    .parse(new java.io.ByteArrayInputStream(xml.getBytes()));
-            document.getDocumentElement().normalize();
-
-            // Extract user info (NameID / Email)
-            String nameId = document.getElementsByTagName("saml:NameID").item(0).getTextContent();
-
-            if (nameId == null || nameId.isEmpty()) {
-                model.addAttribute("error", "Invalid SAML response: NameID not found.");
+            } catch (Exception e) {
+                log.warn("SAML callback failed", e);
+                model.addAttribute("error", "Error processing SAML Response: " + e.getMessage());
                 return "error";
             }
-
-            // ✅ Successful login
-            model.addAttribute("userEmail", nameId);
-            model.addAttribute("message", "SAML Login Successful!");
-            return "home"; // Or redirect to dashboard.html
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            model.addAttribute("error", "Error processing SAML Response: " + e.getMessage());
-            return "error";
         }
     }
 
+    // displayName, else firstName + lastName, from the assertion attributes
+    private static String displayName(SAMLAssertion assertion) {
+        String displayName = assertion.firstAttribute("displayName");
+        if (displayName != null) return displayName;
+        String first = assertion.firstAttribute("firstName");
+        String last = assertion.firstAttribute("lastName");
+        return ((first != null ? first : "") + " " + (last != null ? last : "")).trim();
+    }
+
     /**
      * Test SSO Configuration button (redirects to IdP)
      */
     @GetMapping("/test")
     public String testSamlConfig(Model model) {
-        SSOConfig config = ssoConfigRepository.findTopByOrderByIdDesc();
-        if (config == null || !config.isSamlEnabled() || config.getSamlUrl() == null) {
+        SSOConfigSnapshot config = ssoConfigProvider.current();
+        if (!config.samlEnabled() || config.samlUrl() == null) {
             model.addAttribute("error", "SAML is not enabled in your configuration.");
             return "error";
         }
-        return "redirect:" + config.getSamlUrl();
+        return "redirect:" + config.samlUrl();
     }
 
     /**
      * Bonus: Metadata endpoint for IdP to configure SP automatically.
      */
     @GetMapping(value = "/metadata", produces = "application/xml")
-    @ResponseBody
-    public String metadata(HttpServletRequest request) {
-        String baseUrl = request.getRequestURL().toString().replace(request.getRequestURI(), request.getContextPath());
-
-        // Entity ID (SP Issuer)
-        String entityId = baseUrl + "/sso/saml/metadata";
-
-        // Assertion Consumer Service (ACS) URL
-        String acsUrl = baseUrl + "/sso/saml/callback";
-
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
-                + "<EntityDescriptor xmlns=\"urn:oasis:names:tc:SAML:2.0:metadata\" entityID=\"" + entityId + "\">"
-                + "<SPSSODescriptor WantAssertionsSigned=\"false\" AuthnRequestsSigned=\"false\" protocolSupportEnumeration=\"urn:oasis:names:tc:SAML:2.0:protocol\">"
-                + "<AssertionConsumerService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\" Location=\"" + acsUrl + "\" index=\"1\"/>"
-                + "</SPSSODescriptor>"
-                + "</EntityDescriptor>";
+    public ResponseEntity<byte[]> metadata() {
+        // Rendered once at startup; If-None-Match requests get a 304
+        SAMLArtifactCache.Metadata metadata = samlArtifactCache.metadata();
+
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.APPLICATION_XML, StandardCharsets.UTF_8))
+                .cacheControl(CacheControl.maxAge(metadataMaxAge).cachePublic())
+                .eTag(metadata.etag())
+                .body(metadata.body());
     }
 }
\ No newline at end of file
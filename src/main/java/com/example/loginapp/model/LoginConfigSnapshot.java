@@ -0,0 +1,36 @@
+package com.example.loginapp.model;
+
+/**
+ * Immutable, versioned copy of the active {@link LoginConfig} row, used to render the login page.
+ * The {@code version} changes only when the settings change.
+ */
+public record LoginConfigSnapshot(
+        long version,
+        boolean jwtEnabled,
+        boolean samlEnabled,
+        boolean oauthEnabled,
+        String jwtUrl,
+        String samlUrl,
+        String oauthUrl) {
+
+    // ✅ Defaults used when no LoginConfig row exists (JWT button only)
+    public static LoginConfigSnapshot defaults(long version) {
+        return new LoginConfigSnapshot(version, true, false, false, null, null, null);
+    }
+
+    public static LoginConfigSnapshot of(long version, LoginConfig config) {
+        if (config == null) return defaults(version);
+        return new LoginConfigSnapshot(version,
+                config.isJwtEnabled(), config.isSamlEnabled(), config.isOauthEnabled(),
+                config.getJwtUrl(), config.getSamlUrl(), config.getOauthUrl());
+    }
+
+    public LoginConfigSnapshot withVersion(long newVersion) {
+        return new LoginConfigSnapshot(newVersion, jwtEnabled, samlEnabled, oauthEnabled, jwtUrl, samlUrl, oauthUrl);
+    }
+
+    // True when both snapshots carry the same settings, regardless of version
+    public boolean sameSettingsAs(LoginConfigSnapshot other) {
+        return other != null && withVersion(0).equals(other.withVersion(0));
+    }
+}
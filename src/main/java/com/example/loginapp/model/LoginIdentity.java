@@ -0,0 +1,23 @@
+package com.example.loginapp.model;
+
+import java.util.Locale;
+
+/**
+ * What a user typed into the login (or register) form, normalized and classified up front.
+ * <p>
+ * Matching is case-insensitive: both the input and the {@code *_normalized} columns on
+ * {@link User} are trimmed and lower-cased the same way. Input containing an {@code @} is
+ * looked up as an email, anything else as a username, so each login runs one indexed lookup
+ * instead of {@code username = ? OR email = ?}.
+ */
+public record LoginIdentity(String value, boolean email) {
+
+    public static LoginIdentity of(String input) {
+        String normalized = normalize(input);
+        return new LoginIdentity(normalized, normalized != null && normalized.indexOf('@') > 0);
+    }
+
+    public static String normalize(String identity) {
+        return identity == null ? null : identity.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.loginapp.model;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The signed-in user as kept in the security context, whichever way they logged in (form, JWT, OAuth, SAML).
+ * <p>
+ * Only what requests need — id, email, display name and {@code ROLE_*} authorities — so the session (or
+ * the stateless cookie) never carries the JPA {@link User} entity or its password hash.
+ */
+public record LoginPrincipal(Long id, String email, String displayName, List<String> roles)
+        implements AuthenticatedPrincipal, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public LoginPrincipal {
+        roles = List.copyOf(roles);
+    }
+
+    public static LoginPrincipal of(User user) {
+        return new LoginPrincipal(user.getId(), user.getEmail(), user.getName(), List.of(roleName(user.getRole())));
+    }
+
+    // 🟢 Add ROLE_ prefix if missing
+    public static String roleName(String role) {
+        return role.startsWith("ROLE_") ? role : "ROLE_" + role;
+    }
+
+    // Authentication.getName() resolves to the email
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return roles.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList();
+    }
+
+    public Authentication toAuthentication() {
+        return UsernamePasswordAuthenticationToken.authenticated(this, null, authorities());
+    }
+}
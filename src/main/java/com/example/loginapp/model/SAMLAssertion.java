@@ -0,0 +1,65 @@
+package com.example.loginapp.model;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the app needs from an IdP's SAMLResponse, read in a single pass by {@code SAMLResponseReader}:
+ * the top-level status, the subject's NameID, the assertion conditions and its attributes.
+ */
+public record SAMLAssertion(
+        // ✅ Response envelope
+        String responseId,
+        String inResponseTo,
+        String destination,
+        String statusCode,
+
+        // ✅ Assertion
+        String assertionId,
+        String issuer,
+        String nameId,
+        String nameIdFormat,
+        boolean signed,
+
+        // ✅ Conditions
+        Instant notBefore,
+        Instant notOnOrAfter,
+        List<String> audiences,
+
+        // ✅ Attributes (name -> values, in document order)
+        Map<String, List<String>> attributes) {
+
+    public static final String STATUS_SUCCESS = "urn:oasis:names:tc:SAML:2.0:status:Success";
+
+    public boolean isSuccess() {
+        return STATUS_SUCCESS.equals(statusCode);
+    }
+
+    // NotBefore / NotOnOrAfter, allowing for clock drift between us and the IdP
+    public boolean isValidAt(Instant now, Duration clockSkew) {
+        if (notBefore != null && now.plus(clockSkew).isBefore(notBefore)) return false;
+        return notOnOrAfter == null || now.minus(clockSkew).isBefore(notOnOrAfter);
+    }
+
+    // An assertion restricted to audiences is only meant for the SPs it names (their entity IDs)
+    public boolean isIntendedFor(String entityId) {
+        return audiences.isEmpty() || audiences.contains(entityId);
+    }
+
+    // Responses are only taken from the configured IdP
+    public boolean isIssuedBy(String idpEntityId) {
+        return idpEntityId != null && idpEntityId.equals(issuer);
+    }
+
+    // The Response must say it was sent to this ACS URL, so one issued for another SP can't be posted here
+    public boolean isDestinedFor(String acsUrl) {
+        return acsUrl.equals(destination);
+    }
+
+    public String firstAttribute(String name) {
+        List<String> values = attributes.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
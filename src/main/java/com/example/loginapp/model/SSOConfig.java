@@ -19,9 +19,13 @@ public class SSOConfig {
     private String jwtIssuer;
     private String jwtSecret;
 
+    @Column(length = 4096)
+    private String jwtPublicKey;       // PEM public key / certificate for RS256 / ES256 tokens
+
     // ✅ SAML settings
     private String samlUrl;
     private String samlEntityId;
+    private String samlIdpEntityId;    // Issuer of the IdP's responses and assertions
     private String samlCertificate;
 
     // ✅ OAuth settings
@@ -31,6 +35,7 @@ public class SSOConfig {
     private String oauthClientId;
     private String oauthClientSecret;
     private String oauthRedirectUri;
+    private String oauthDiscoveryUrl;  // OIDC discovery document (enables local id_token validation)
 
     // Getters & Setters
     public Long getId() { return id; }
@@ -54,12 +59,18 @@ public class SSOConfig {
     public String getJwtSecret() { return jwtSecret; }
     public void setJwtSecret(String jwtSecret) { this.jwtSecret = jwtSecret; }
 
+    public String getJwtPublicKey() { return jwtPublicKey; }
+    public void setJwtPublicKey(String jwtPublicKey) { this.jwtPublicKey = jwtPublicKey; }
+
     public String getSamlUrl() { return samlUrl; }
     public void setSamlUrl(String samlUrl) { this.samlUrl = samlUrl; }
 
     public String getSamlEntityId() { return samlEntityId; }
     public void setSamlEntityId(String samlEntityId) { this.samlEntityId = samlEntityId; }
 
+    public String getSamlIdpEntityId() { return samlIdpEntityId; }
+    public void setSamlIdpEntityId(String samlIdpEntityId) { this.samlIdpEntityId = samlIdpEntityId; }
+
     public String getSamlCertificate() { return samlCertificate; }
     public void setSamlCertificate(String samlCertificate) { this.samlCertificate = samlCertificate; }
 
@@ -80,4 +91,7 @@ public class SSOConfig {
 
     public String getOauthRedirectUri() { return oauthRedirectUri; }
     public void setOauthRedirectUri(String oauthRedirectUri) { this.oauthRedirectUri = oauthRedirectUri; }
+
+    public String getOauthDiscoveryUrl() { return oauthDiscoveryUrl; }
+    public void setOauthDiscoveryUrl(String oauthDiscoveryUrl) { this.oauthDiscoveryUrl = oauthDiscoveryUrl; }
 }
@@ -0,0 +1,85 @@
+package com.example.loginapp.model;
+
+/**
+ * Immutable, versioned copy of the active {@link SSOConfig} row.
+ * <p>
+ * Handed out by {@code SSOConfigProvider} to every SSO controller so the login hot path never
+ * touches the database or a managed JPA entity. The {@code version} changes whenever the
+ * settings change, which lets callers key derived caches (verifiers, clients, keys) on it.
+ */
+public record SSOConfigSnapshot(
+        long version,
+        Long id,
+
+        // ✅ Common toggles
+        boolean jwtEnabled,
+        boolean samlEnabled,
+        boolean oauthEnabled,
+
+        // ✅ JWT settings
+        String jwtUrl,
+        String jwtIssuer,
+        String jwtSecret,
+        String jwtPublicKey,
+
+        // ✅ SAML settings
+        String samlUrl,
+        String samlEntityId,
+        String samlIdpEntityId,
+        String samlCertificate,
+
+        // ✅ OAuth settings
+        String oauthUrl,
+        String oauthTokenUrl,
+        String oauthUserInfoUrl,
+        String oauthClientId,
+        String oauthClientSecret,
+        String oauthRedirectUri,
+        String oauthDiscoveryUrl) {
+
+    // Snapshot used when no SSO configuration has been saved yet
+    public static SSOConfigSnapshot empty(long version) {
+        return new SSOConfigSnapshot(version, null, false, false, false,
+                null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    public static SSOConfigSnapshot of(long version, SSOConfig config) {
+        if (config == null) return empty(version);
+        return new SSOConfigSnapshot(version, config.getId(),
+                config.isJwtEnabled(), config.isSamlEnabled(), config.isOauthEnabled(),
+                config.getJwtUrl(), config.getJwtIssuer(), config.getJwtSecret(), config.getJwtPublicKey(),
+                config.getSamlUrl(), config.getSamlEntityId(), config.getSamlIdpEntityId(), config.getSamlCertificate(),
+                config.getOauthUrl(), config.getOauthTokenUrl(), config.getOauthUserInfoUrl(),
+                config.getOauthClientId(), config.getOauthClientSecret(), config.getOauthRedirectUri(),
+                config.getOauthDiscoveryUrl());
+    }
+
+    public boolean isConfigured() {
+        return id != null;
+    }
+
+    // id_tokens can be validated locally once an OIDC discovery URL is set
+    public boolean hasOidcDiscovery() {
+        return oauthDiscoveryUrl != null && !oauthDiscoveryUrl.isBlank();
+    }
+
+    public SSOConfigSnapshot withVersion(long newVersion) {
+        return new SSOConfigSnapshot(newVersion, id, jwtEnabled, samlEnabled, oauthEnabled,
+                jwtUrl, jwtIssuer, jwtSecret, jwtPublicKey, samlUrl, samlEntityId, samlIdpEntityId, samlCertificate,
+                oauthUrl, oauthTokenUrl, oauthUserInfoUrl, oauthClientId, oauthClientSecret, oauthRedirectUri,
+                oauthDiscoveryUrl);
+    }
+
+    // True when both snapshots carry the same settings, regardless of version
+    public boolean sameSettingsAs(SSOConfigSnapshot other) {
+        return other != null && withVersion(0).equals(other.withVersion(0));
+    }
+
+    @Override
+    public String toString() {
+        // Never leak secrets into logs
+        return "SSOConfigSnapshot[version=" + version + ", id=" + id
+                + ", jwtEnabled=" + jwtEnabled + ", samlEnabled=" + samlEnabled
+                + ", oauthEnabled=" + oauthEnabled + "]";
+    }
+}
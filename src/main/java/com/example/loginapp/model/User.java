@@ -2,12 +2,20 @@ package com.example.loginapp.model;
 
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        // Case-insensitive login lookups (see LoginIdentity); the unique index on email_normalized is built
+        // by UserIdentityBackfill once legacy duplicates are merged, so it is not declared here
+        @Index(name = "ix_users_username_normalized", columnList = "username_normalized")
+})
 public class User {
 
+    // ✅ Pooled sequence (50 ids per round trip) so Hibernate can batch inserts; IDENTITY disables batching
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -26,6 +34,17 @@ public class User {
     @Column(nullable = false)
     private String role = "USER"; // Default role assigned to normal users
 
+    // ✅ Lower-cased copies used for login lookups (kept in sync on every insert/update)
+    @Column(name = "username_normalized")
+    private String usernameNormalized;
+
+    @Column(name = "email_normalized")
+    private String emailNormalized;
+
+    // ✅ Set once on insert (null for accounts created before this column existed)
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
     // ✅ Constructors
     public User() {}
 
@@ -60,4 +79,21 @@ public class User {
 
     public String getRole() { return role; }
     public void setRole(String role) { this.role = role; }
+
+    public String getUsernameNormalized() { return usernameNormalized; }
+    public String getEmailNormalized() { return emailNormalized; }
+
+    public Instant getCreatedAt() { return createdAt; }
+
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) createdAt = Instant.now();
+        normalizeIdentity();
+    }
+
+    @PreUpdate
+    void normalizeIdentity() {
+        this.usernameNormalized = LoginIdentity.normalize(username);
+        this.emailNormalized = LoginIdentity.normalize(email);
+    }
 }
@@ -0,0 +1,21 @@
+package com.example.loginapp.model;
+
+import java.util.List;
+
+/**
+ * One keyset page of {@link UserSummary} rows, in ascending id order.
+ * <p>
+ * Navigation is by id rather than offset: the next page is everything after {@link #lastId()},
+ * the previous page everything before {@link #firstId()}, so every page costs the same index seek
+ * no matter how deep into the table it is.
+ */
+public record UserPage(List<UserSummary> users, boolean hasPrevious, boolean hasNext) {
+
+    public Long firstId() {
+        return users.isEmpty() ? null : users.get(0).id();
+    }
+
+    public Long lastId() {
+        return users.isEmpty() ? null : users.get(users.size() - 1).id();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.loginapp.model;
+
+import java.time.Instant;
+
+/**
+ * Read-only row for admin listings and exports: just the columns they show, selected directly
+ * into this record so no {@link User} entities (or password hashes) are loaded.
+ */
+public record UserSummary(Long id, String username, String email, String name, String role, Instant createdAt) {
+}
@@ -2,6 +2,8 @@ package com.example.loginapp.repository;
 
 import com.example.loginapp.model.LoginConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
+@Transactional(readOnly = true)
 public interface LoginConfigRepository extends JpaRepository<LoginConfig, Long> {
 }
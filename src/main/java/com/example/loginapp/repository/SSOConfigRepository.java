@@ -3,8 +3,10 @@ package com.example.loginapp.repository;
 import com.example.loginapp.model.SSOConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
+@Transactional(readOnly = true)
 public interface SSOConfigRepository extends JpaRepository<SSOConfig, Long> {
     // Fetch the most recent SSO configuration entry
     SSOConfig findTopByOrderByIdDesc();
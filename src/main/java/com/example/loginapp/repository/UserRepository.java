@@ -1,14 +1,75 @@
 package com.example.loginapp.repository;
 
 import com.example.loginapp.model.User;
+import com.example.loginapp.model.UserSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+// Finders run read-only (served by the read replica when one is configured); save/delete keep their own
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User, Long> {
 
     // 🔹 Spring Data JPA automatically implements this method based on naming convention
     Optional<User> findByEmail(String email);
 
     // (optional) If you want both username and email search
+    // Case-sensitive OR query; login paths use the normalized lookups below instead
     Optional<User> findByUsernameOrEmail(String username, String email);
+
+    // 🔹 Single indexed lookups on the lower-cased columns (oldest account wins on legacy duplicates)
+    Optional<User> findFirstByUsernameNormalizedOrderByIdAsc(String usernameNormalized);
+
+    Optional<User> findFirstByEmailNormalizedOrderByIdAsc(String emailNormalized);
+
+    // 🔹 Bulk provisioning: existing users for a whole batch at once
+    List<User> findByEmailNormalizedIn(Collection<String> emailsNormalized);
+
+    List<User> findByUsernameNormalizedIn(Collection<String> usernamesNormalized);
+
+    // 🔹 Admin listing: keyset pages on the primary key, optional prefix/role filters, DTO rows only
+    @Query("""
+            SELECT new com.example.loginapp.model.UserSummary(u.id, u.username, u.email, u.name, u.role, u.createdAt)
+              FROM User u
+             WHERE u.id > :afterId
+               AND (:username IS NULL OR u.usernameNormalized LIKE :username ESCAPE '\\')
+               AND (:email IS NULL OR u.emailNormalized LIKE :email ESCAPE '\\')
+               AND (:role IS NULL OR u.role = :role)
+             ORDER BY u.id ASC
+            """)
+    List<UserSummary> findSummariesAfter(long afterId, String username, String email, String role, Limit limit);
+
+    // Same filters walking backwards from beforeId (newest first; callers reverse the page)
+    @Query("""
+            SELECT new com.example.loginapp.model.UserSummary(u.id, u.username, u.email, u.name, u.role, u.createdAt)
+              FROM User u
+             WHERE u.id < :beforeId
+               AND (:username IS NULL OR u.usernameNormalized LIKE :username ESCAPE '\\')
+               AND (:email IS NULL OR u.emailNormalized LIKE :email ESCAPE '\\')
+               AND (:role IS NULL OR u.role = :role)
+             ORDER BY u.id DESC
+            """)
+    List<UserSummary> findSummariesBefore(long beforeId, String username, String email, String role, Limit limit);
+
+    // 🔹 Export: every matching row as a forward-only stream (server-side cursor; needs an open transaction)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            SELECT new com.example.loginapp.model.UserSummary(u.id, u.username, u.email, u.name, u.role, u.createdAt)
+              FROM User u
+             WHERE (:role IS NULL OR u.role = :role)
+               AND (:createdFrom IS NULL OR u.createdAt >= :createdFrom)
+               AND (:createdBefore IS NULL OR u.createdAt < :createdBefore)
+             ORDER BY u.id ASC
+            """)
+    Stream<UserSummary> streamSummaries(String role, Instant createdFrom, Instant createdBefore);
 }
@@ -0,0 +1,61 @@
+package com.example.loginapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+/**
+ * Picks the BCrypt work factor for this machine at startup.
+ * <p>
+ * Each extra unit of strength doubles the cost, so the same number means very different login
+ * latency on a laptop and on a small cloud instance. This walks the strength up from {@code min}
+ * and keeps the highest value whose hash still fits in the target latency.
+ */
+public final class BCryptCalibration {
+
+    private static final Logger log = LoggerFactory.getLogger(BCryptCalibration.class);
+
+    private static final int SAMPLES = 3;
+
+    private BCryptCalibration() {
+    }
+
+    public static int calibrateStrength(Duration targetLatency, int minStrength, int maxStrength) {
+        long targetNanos = targetLatency.toNanos();
+        String password = "calibration-password";
+
+        // Warm up the JIT so the first measured round is not penalised
+        BCrypt.hashpw(password, BCrypt.gensalt(4));
+
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            long nanos = fastestOf(password, strength);
+            log.debug("BCrypt strength {} took {} ms", strength, nanos / 1_000_000);
+            if (nanos > targetNanos) {
+                break;
+            }
+            chosen = strength;
+            // The next step will take about twice as long; stop if it can only overshoot
+            if (nanos * 2 > targetNanos) {
+                break;
+            }
+        }
+
+        log.info("Calibrated BCrypt strength {} for a target of {} ms", chosen, targetLatency.toMillis());
+        return chosen;
+    }
+
+    // Fastest of a few runs, so a GC pause or a noisy neighbour does not lower the strength
+    private static long fastestOf(String password, int strength) {
+        String salt = BCrypt.gensalt(strength);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long started = System.nanoTime();
+            BCrypt.hashpw(password, salt);
+            best = Math.min(best, System.nanoTime() - started);
+        }
+        return best;
+    }
+}
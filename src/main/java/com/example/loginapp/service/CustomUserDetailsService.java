@@ -32,37 +32,66 @@
 
 package com.example.loginapp.service;
 
+import com.example.loginapp.model.LoginPrincipal;
 import com.example.loginapp.model.User;
 import com.example.loginapp.repository.UserRepository;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-
-import java.util.List;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    /**
+     * Form-login credentials plus the {@link LoginPrincipal} that replaces them once the password matched
+     * (see {@code SecurityConfig.authenticationProvider}); the hash never reaches the security context.
+     */
+    public static final class LoginUserDetails extends org.springframework.security.core.userdetails.User {
+
+        private final LoginPrincipal principal;
+
+        public LoginUserDetails(LoginPrincipal principal, String password) {
+            super(principal.email(), password, principal.authorities());
+            this.principal = principal;
+        }
+
+        public LoginPrincipal principal() {
+            return principal;
+        }
+    }
 
     private final UserRepository userRepository;
+    private final UserLookupCache userLookupCache;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, UserLookupCache userLookupCache) {
         this.userRepository = userRepository;
+        this.userLookupCache = userLookupCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String usernameOrEmail) throws UsernameNotFoundException {
-        User user = userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
+        User user = userLookupCache.find(usernameOrEmail)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        // 🟢 Add ROLE_ prefix if missing
-        String roleName = user.getRole().startsWith("ROLE_") ? user.getRole() : "ROLE_" + user.getRole();
+        return new LoginUserDetails(LoginPrincipal.of(user), user.getPassword());
+    }
+
+    // ✅ Called by form login after a successful match when the stored hash needs upgrading
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        ReplicaRouting.onPrimary(() -> userRepository.findByEmail(user.getUsername())).ifPresent(stored -> {
+            stored.setPassword(newPassword);
+            userRepository.save(stored);
+            userLookupCache.evict(stored);
+        });
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPassword(),
-                List.of(new SimpleGrantedAuthority(roleName))
-        );
+        if (user instanceof LoginUserDetails details) {
+            return new LoginUserDetails(details.principal(), newPassword);
+        }
+        return org.springframework.security.core.userdetails.User.withUserDetails(user)
+                .password(newPassword)
+                .build();
     }
 }
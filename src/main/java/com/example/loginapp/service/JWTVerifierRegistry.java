@@ -0,0 +1,77 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+
+/**
+ * Ready-to-use, thread-safe JWS verifiers for the JWT SSO callback, built once per SSO config version.
+ * <p>
+ * HS* tokens are checked against the configured secret; RS* / PS* / ES* tokens against the configured
+ * PEM public key. A verifier is only returned for the algorithm family that matches the configured
+ * key material, so a token can't pick a weaker check by changing its {@code alg} header.
+ */
+@Service
+public class JWTVerifierRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(JWTVerifierRegistry.class);
+
+    private record Verifiers(long configVersion, JWSVerifier mac, JWSVerifier rsa, JWSVerifier ec) {}
+
+    private volatile Verifiers current;
+
+    // ✅ Verifier for the token's algorithm, or null when no matching key is configured
+    public JWSVerifier verifierFor(SSOConfigSnapshot config, JWSAlgorithm algorithm) {
+        Verifiers verifiers = current;
+        if (verifiers == null || verifiers.configVersion() != config.version()) {
+            verifiers = build(config);
+            current = verifiers;
+        }
+
+        if (JWSAlgorithm.Family.HMAC_SHA.contains(algorithm)) return verifiers.mac();
+        if (JWSAlgorithm.Family.RSA.contains(algorithm)) return verifiers.rsa();
+        if (JWSAlgorithm.Family.EC.contains(algorithm)) return verifiers.ec();
+        return null;
+    }
+
+    private static Verifiers build(SSOConfigSnapshot config) {
+        JWSVerifier mac = null;
+        JWSVerifier rsa = null;
+        JWSVerifier ec = null;
+
+        if (config.jwtSecret() != null && !config.jwtSecret().isEmpty()) {
+            try {
+                mac = new MACVerifier(config.jwtSecret());
+            } catch (JOSEException e) {
+                log.warn("JWT secret unusable for HMAC verification: {}", e.getMessage());
+            }
+        }
+
+        if (config.jwtPublicKey() != null && !config.jwtPublicKey().isBlank()) {
+            try {
+                PublicKey key = PemKeys.parsePublicKey(config.jwtPublicKey());
+                if (key instanceof RSAPublicKey rsaKey) {
+                    rsa = new RSASSAVerifier(rsaKey);
+                } else if (key instanceof ECPublicKey ecKey) {
+                    ec = new ECDSAVerifier(ecKey);
+                }
+            } catch (GeneralSecurityException | JOSEException | IllegalArgumentException e) {
+                log.warn("JWT public key unusable: {}", e.getMessage());
+            }
+        }
+
+        return new Verifiers(config.version(), mac, rsa, ec);
+    }
+}
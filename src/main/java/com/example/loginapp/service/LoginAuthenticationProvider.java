@@ -0,0 +1,82 @@
+package com.example.loginapp.service;
+
+import org.springframework.security.authentication.AccountStatusException;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * Form-login authentication: throttled per account and client IP before the user lookup and the password
+ * check, and keeping only the slim {@link com.example.loginapp.model.LoginPrincipal} once the password matched.
+ * Each attempt is timed as the {@code form} flow of {@link LoginMetrics}, with its user lookup and BCrypt phases.
+ */
+public class LoginAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final LoginThrottle loginThrottle;
+    private final LoginMetrics loginMetrics;
+
+    public LoginAuthenticationProvider(CustomUserDetailsService userDetailsService,
+                                       PasswordEncoder passwordEncoder,
+                                       LoginThrottle loginThrottle,
+                                       LoginMetrics loginMetrics) {
+        // retrieveUser() is final, so the lookup is timed around the UserDetailsService instead
+        super(username -> loginMetrics.time(LoginMetrics.Flow.FORM, LoginMetrics.Phase.USER_LOOKUP,
+                () -> userDetailsService.loadUserByUsername(username)));
+        setPasswordEncoder(passwordEncoder);
+        setUserDetailsPasswordService(userDetailsService); // rehash on login when needed
+        this.loginThrottle = loginThrottle;
+        this.loginMetrics = loginMetrics;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        LoginMetrics.Attempt attempt = loginMetrics.start(LoginMetrics.Flow.FORM);
+        try {
+            // Form login fills in the client address as WebAuthenticationDetails
+            String clientIp = authentication.getDetails() instanceof WebAuthenticationDetails details
+                    ? details.getRemoteAddress()
+                    : null;
+            loginThrottle.check(authentication.getName(), clientIp);
+            Authentication result = super.authenticate(authentication);
+            attempt.success();
+            return result;
+        } catch (LoginThrottledException e) {
+            attempt.throttled();
+            throw e;
+        } catch (AuthenticationServiceException e) {
+            throw e; // infrastructure (e.g. hashing pool busy), recorded as ERROR
+        } catch (AccountStatusException e) {
+            attempt.failure("account_status");
+            throw e;
+        } catch (AuthenticationException e) {
+            attempt.failure("bad_credentials");
+            throw e;
+        } finally {
+            attempt.close();
+        }
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication)
+            throws AuthenticationException {
+        loginMetrics.time(LoginMetrics.Flow.FORM, LoginMetrics.Phase.BCRYPT, () -> {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return null;
+        });
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                         UserDetails user) {
+        Object slim = user instanceof CustomUserDetailsService.LoginUserDetails details
+                ? details.principal()
+                : principal;
+        return super.createSuccessAuthentication(slim, authentication, user);
+    }
+}
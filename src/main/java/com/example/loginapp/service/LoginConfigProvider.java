@@ -0,0 +1,61 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginConfigSnapshot;
+import com.example.loginapp.repository.LoginConfigRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory holder for the login page settings, refreshed periodically from {@code login_config}.
+ * Same approach as {@link SSOConfigProvider}: readers get an immutable snapshot, and the version
+ * only moves when the settings actually change.
+ */
+@Service
+public class LoginConfigProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginConfigProvider.class);
+
+    private final LoginConfigRepository loginConfigRepository;
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile LoginConfigSnapshot current;
+
+    public LoginConfigProvider(LoginConfigRepository loginConfigRepository) {
+        this.loginConfigRepository = loginConfigRepository;
+    }
+
+    public LoginConfigSnapshot current() {
+        LoginConfigSnapshot snapshot = current;
+        return snapshot != null ? snapshot : reload();
+    }
+
+    // ✅ Re-read the first row (same row the login page has always used)
+    public LoginConfigSnapshot reload() {
+        var config = loginConfigRepository.findAll().stream().findFirst().orElse(null);
+        return publish(LoginConfigSnapshot.of(0, config));
+    }
+
+    @Scheduled(fixedDelayString = "${login.config.refresh-interval-ms:60000}",
+            initialDelayString = "${login.config.refresh-interval-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.warn("Login config refresh failed, keeping version {}", versions.get(), e);
+        }
+    }
+
+    private synchronized LoginConfigSnapshot publish(LoginConfigSnapshot loaded) {
+        LoginConfigSnapshot previous = current;
+        if (previous != null && previous.sameSettingsAs(loaded)) {
+            return previous;
+        }
+        LoginConfigSnapshot next = loaded.withVersion(versions.incrementAndGet());
+        current = next;
+        return next;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.loginapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Timers for every login path and its sub-phases, exported with percentiles and a percentile histogram
+ * (Prometheus {@code histogram_quantile} works across instances; the precomputed p50/p95/p99 are per node).
+ * <ul>
+ *   <li>{@code login.flow{flow, outcome}}: one sample per attempt, from the first line of the handler to
+ *       its result. The outcome is SUCCESS, FAILURE (rejected credentials or token), THROTTLED, or ERROR
+ *       (the flow threw).</li>
+ *   <li>{@code login.flow.failures{flow, reason}}: why rejected attempts failed.</li>
+ *   <li>{@code login.phase{flow, phase}}: config lookup, user lookup, BCrypt, signature verification,
+ *       the IdP token and userinfo calls, user provisioning.</li>
+ * </ul>
+ * Timers are registered on first use, so only the flow/phase pairs that actually occur get a series.
+ * Phases are also added to the request's {@link RequestTimings}, when the endpoint has one.
+ */
+@Service
+public class LoginMetrics {
+
+    public enum Flow { FORM, JWT, OAUTH, SAML, REGISTER }
+
+    public enum Phase { CONFIG_LOOKUP, USER_LOOKUP, BCRYPT, SIGNATURE, IDP_TOKEN, IDP_USERINFO, PROVISIONING }
+
+    public enum Outcome { SUCCESS, FAILURE, THROTTLED, ERROR }
+
+    // A timed step that may throw a checked exception (JOSE, parser, ...)
+    @FunctionalInterface
+    public interface PhaseCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicReferenceArray<Timer> flowTimers =
+            new AtomicReferenceArray<>(Flow.values().length * Outcome.values().length);
+    private final AtomicReferenceArray<Timer> phaseTimers =
+            new AtomicReferenceArray<>(Flow.values().length * Phase.values().length);
+
+    public LoginMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // ✅ Start timing one login attempt; close() records it (as ERROR unless an outcome was set)
+    public Attempt start(Flow flow) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) timings.flow(flow);
+        return new Attempt(flow, timings, System.nanoTime());
+    }
+
+    // ✅ Time one phase of a flow, whether it returns or throws
+    public <T, E extends Exception> T time(Flow flow, Phase phase, PhaseCall<T, E> call) throws E {
+        return time(RequestTimings.current(), flow, phase, call);
+    }
+
+    // ✅ Time an async phase until its future completes (IdP round trips)
+    public <T> CompletableFuture<T> timeAsync(Flow flow, Phase phase, Supplier<CompletableFuture<T>> call) {
+        return timeAsync(RequestTimings.current(), flow, phase, call);
+    }
+
+    // For stages chained off another thread, which must pass in the recorder captured on the servlet thread
+    public <T> CompletableFuture<T> timeAsync(RequestTimings timings, Flow flow, Phase phase,
+                                              Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        return call.get().whenComplete((result, error) -> record(timings, flow, phase, System.nanoTime() - start));
+    }
+
+    private <T, E extends Exception> T time(RequestTimings timings, Flow flow, Phase phase,
+                                            PhaseCall<T, E> call) throws E {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            record(timings, flow, phase, System.nanoTime() - start);
+        }
+    }
+
+    private void record(RequestTimings timings, Flow flow, Phase phase, long nanos) {
+        phaseTimer(flow, phase).record(nanos, TimeUnit.NANOSECONDS);
+        if (timings != null) timings.add(phase, nanos);
+    }
+
+    private Timer flowTimer(Flow flow, Outcome outcome) {
+        int index = flow.ordinal() * Outcome.values().length + outcome.ordinal();
+        Timer timer = flowTimers.get(index);
+        if (timer == null) {
+            // Registering twice returns the same meter, so a race here is harmless
+            timer = Timer.builder("login.flow")
+                    .description("Login attempts by authentication flow and outcome")
+                    .tags("flow", tag(flow), "outcome", outcome.name())
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            flowTimers.set(index, timer);
+        }
+        return timer;
+    }
+
+    private Timer phaseTimer(Flow flow, Phase phase) {
+        int index = flow.ordinal() * Phase.values().length + phase.ordinal();
+        Timer timer = phaseTimers.get(index);
+        if (timer == null) {
+            timer = Timer.builder("login.phase")
+                    .description("Time spent in each phase of a login flow")
+                    .tags("flow", tag(flow), "phase", tag(phase))
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            phaseTimers.set(index, timer);
+        }
+        return timer;
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One timed login attempt. Mark the outcome before returning; an attempt closed without one (the
+     * handler threw) is recorded as ERROR. Closing again is a no-op, so async flows may close from the
+     * completion stage.
+     */
+    public final class Attempt implements AutoCloseable {
+
+        private final Flow flow;
+        private final RequestTimings timings;
+        private final long startNanos;
+        private Outcome outcome = Outcome.ERROR;
+        private boolean recorded;
+
+        private Attempt(Flow flow, RequestTimings timings, long startNanos) {
+            this.flow = flow;
+            this.timings = timings;
+            this.startNanos = startNanos;
+        }
+
+        // Records into the request captured at start(), so it also works from an executor thread
+        public <T, E extends Exception> T time(Phase phase, PhaseCall<T, E> call) throws E {
+            return LoginMetrics.this.time(timings, flow, phase, call);
+        }
+
+        public void success() {
+            outcome = Outcome.SUCCESS;
+        }
+
+        // reason: a short fixed code (bad_credentials, invalid_signature, ...), never user input
+        public void failure(String reason) {
+            outcome = Outcome.FAILURE;
+            Counter.builder("login.flow.failures")
+                    .description("Rejected login attempts by flow and reason")
+                    .tags("flow", tag(flow), "reason", reason)
+                    .register(meterRegistry)
+                    .increment();
+        }
+
+        public void throttled() {
+            outcome = Outcome.THROTTLED;
+        }
+
+        @Override
+        public void close() {
+            if (recorded) return;
+            recorded = true;
+            flowTimer(flow, outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
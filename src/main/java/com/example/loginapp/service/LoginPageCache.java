@@ -0,0 +1,93 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginConfigSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Pre-rendered {@code login.html}, one copy per {@link LoginConfigSnapshot} version.
+ * <p>
+ * GET /login only depends on the login settings, so the page is rendered once per settings change
+ * and then served as bytes with a strong, content-derived ETag (identical across nodes).
+ */
+@Service
+public class LoginPageCache {
+
+    public record RenderedPage(long version, String etag, byte[] body) {}
+
+    private final LoginConfigProvider loginConfigProvider;
+    private final ITemplateEngine templateEngine;
+    private final Timer renderTimer;
+
+    private volatile RenderedPage page;
+
+    public LoginPageCache(LoginConfigProvider loginConfigProvider,
+                          ITemplateEngine templateEngine,
+                          MeterRegistry meterRegistry) {
+        this.loginConfigProvider = loginConfigProvider;
+        this.templateEngine = templateEngine;
+        this.renderTimer = Timer.builder("login.page.render")
+                .description("Thymeleaf renders of the login page (one per login config version)")
+                .register(meterRegistry);
+    }
+
+    public RenderedPage get(HttpServletRequest request, HttpServletResponse response) {
+        LoginConfigSnapshot config = loginConfigProvider.current();
+        RenderedPage cached = page;
+        if (cached != null && cached.version() == config.version()) {
+            return cached;
+        }
+        synchronized (this) {
+            cached = page;
+            if (cached == null || cached.version() != config.version()) {
+                cached = renderTimer.record(() -> render(config, request, response));
+                page = cached;
+            }
+            return cached;
+        }
+    }
+
+    private RenderedPage render(LoginConfigSnapshot config, HttpServletRequest request, HttpServletResponse response) {
+        // Links must not carry a per-user ;jsessionid into the shared copy
+        HttpServletResponse noUrlRewriting = new HttpServletResponseWrapper(response) {
+            @Override
+            public String encodeURL(String url) {
+                return url;
+            }
+
+            @Override
+            public String encodeRedirectURL(String url) {
+                return url;
+            }
+        };
+
+        var exchange = JakartaServletWebApplication.buildApplication(request.getServletContext())
+                .buildExchange(request, noUrlRewriting);
+        var context = new WebContext(exchange, request.getLocale(), Map.of("loginConfig", config));
+
+        byte[] body = templateEngine.process("login", context).getBytes(StandardCharsets.UTF_8);
+        return new RenderedPage(config.version(), "\"" + sha256(body) + "\"", body);
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
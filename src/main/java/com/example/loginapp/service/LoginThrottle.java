@@ -0,0 +1,104 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginIdentity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory login throttle, checked before the user lookup and the BCrypt verification.
+ * <p>
+ * Every attempt takes a token from two buckets: one for the normalized username/email, one for the
+ * client IP. Each bucket is a GCRA token bucket held in a single {@link AtomicLong} (its theoretical
+ * arrival time), updated with a CAS loop — no locks, and a rejection is a map lookup plus a compare.
+ * Buckets live in size-bounded Caffeine caches and are dropped after being idle, so memory stays
+ * bounded however many usernames or addresses an attacker sprays.
+ */
+@Service
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final Limit accountLimit;
+    private final Limit ipLimit;
+    private final Cache<String, AtomicLong> accounts;
+    private final Cache<String, AtomicLong> addresses;
+    private final Counter accountRejections;
+    private final Counter ipRejections;
+
+    // burst attempts at once, then one every interval
+    record Limit(long intervalNanos, long toleranceNanos) {
+
+        static Limit of(int burst, int perMinute) {
+            long interval = Duration.ofMinutes(1).toNanos() / Math.max(1, perMinute);
+            return new Limit(interval, interval * Math.max(1, burst));
+        }
+    }
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${security.login.throttle.enabled:true}") boolean enabled,
+                         @Value("${security.login.throttle.account.burst:10}") int accountBurst,
+                         @Value("${security.login.throttle.account.per-minute:5}") int accountPerMinute,
+                         @Value("${security.login.throttle.ip.burst:30}") int ipBurst,
+                         @Value("${security.login.throttle.ip.per-minute:60}") int ipPerMinute,
+                         @Value("${security.login.throttle.max-keys:100000}") long maxKeys,
+                         @Value("${security.login.throttle.idle-expiry:15m}") Duration idleExpiry) {
+        this.enabled = enabled;
+        this.accountLimit = Limit.of(accountBurst, accountPerMinute);
+        this.ipLimit = Limit.of(ipBurst, ipPerMinute);
+        this.accounts = Caffeine.newBuilder().maximumSize(maxKeys).expireAfterAccess(idleExpiry).build();
+        this.addresses = Caffeine.newBuilder().maximumSize(maxKeys).expireAfterAccess(idleExpiry).build();
+        this.accountRejections = Counter.builder("login.throttle.rejected")
+                .tag("key", "account")
+                .description("Login attempts rejected by the per-account limit")
+                .register(meterRegistry);
+        this.ipRejections = Counter.builder("login.throttle.rejected")
+                .tag("key", "ip")
+                .description("Login attempts rejected by the per-IP limit")
+                .register(meterRegistry);
+    }
+
+    // ✅ Take one attempt from the IP and account buckets; throws LoginThrottledException when either is empty
+    public void check(String usernameOrEmail, String clientIp) {
+        if (!enabled) return;
+        long now = System.nanoTime();
+
+        if (clientIp != null) {
+            long wait = tryAcquire(addresses.get(clientIp, key -> newBucket()), ipLimit, now);
+            if (wait > 0) {
+                ipRejections.increment();
+                throw new LoginThrottledException(Duration.ofNanos(wait));
+            }
+        }
+
+        String account = LoginIdentity.normalize(usernameOrEmail);
+        if (account != null && !account.isEmpty()) {
+            long wait = tryAcquire(accounts.get(account, key -> newBucket()), accountLimit, now);
+            if (wait > 0) {
+                accountRejections.increment();
+                throw new LoginThrottledException(Duration.ofNanos(wait));
+            }
+        }
+    }
+
+    // GCRA: 0 when allowed (and recorded), otherwise the nanoseconds until the next attempt would be allowed
+    static long tryAcquire(AtomicLong theoreticalArrival, Limit limit, long now) {
+        for (;;) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + limit.intervalNanos();
+            long wait = next - limit.toleranceNanos() - now;
+            if (wait > 0) return wait;
+            if (theoreticalArrival.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    // A fresh bucket is full: any "now" is past its theoretical arrival time
+    private static AtomicLong newBucket() {
+        return new AtomicLong(Long.MIN_VALUE);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.loginapp.service;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+import java.time.Duration;
+
+/**
+ * Too many login attempts for this account or client IP; rejected before any lookup or hashing (HTTP 429).
+ * An {@link org.springframework.security.core.AuthenticationException} so Spring's form-login
+ * failure handling sees it, like {@link PasswordHashingBusyException}.
+ */
+public class LoginThrottledException extends AuthenticationServiceException {
+
+    private final Duration retryAfter;
+
+    public LoginThrottledException(Duration retryAfter) {
+        super("Too many login attempts");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    // Whole seconds for the Retry-After header (at least 1)
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    // Thrown on the attack path: skip the stack trace so a rejection stays in the microseconds
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
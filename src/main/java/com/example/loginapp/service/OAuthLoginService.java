@@ -0,0 +1,82 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.json.JSONObject;
+import org.springframework.stereotype.Service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * OAuth authorization-code exchange: code -> tokens -> user claims.
+ * <p>
+ * When an OIDC discovery URL is configured and the token response carries an {@code id_token},
+ * the claims come from the locally validated id_token ({@link OIDCKeyService}) and the userinfo
+ * round trip is skipped; the id_token must carry the nonce of this browser's authorization request.
+ * Otherwise the access token is sent to the userinfo endpoint as before.
+ * <p>
+ * Built on {@link SSOHttpClient}'s futures, so the callback can either wait for it on the servlet
+ * thread ({@link CallbackMode#BLOCKING}) or hand the future back to Spring MVC and release the
+ * thread while the IdP round trips are in flight ({@link CallbackMode#ASYNC}).
+ */
+@Service
+public class OAuthLoginService {
+
+    public enum CallbackMode { BLOCKING, ASYNC }
+
+    private final SSOHttpClient ssoHttpClient;
+    private final OIDCKeyService oidcKeyService;
+    private final LoginMetrics loginMetrics;
+
+    public OAuthLoginService(SSOHttpClient ssoHttpClient, OIDCKeyService oidcKeyService, LoginMetrics loginMetrics) {
+        this.ssoHttpClient = ssoHttpClient;
+        this.oidcKeyService = oidcKeyService;
+        this.loginMetrics = loginMetrics;
+    }
+
+    // ✅ Non-blocking: no thread is held while waiting on the IdP
+    public CompletableFuture<JSONObject> exchangeCodeAsync(SSOConfigSnapshot config, String code, String nonce) {
+        String body = "grant_type=authorization_code"
+                + "&code=" + code
+                + "&redirect_uri=" + URLEncoder.encode(config.oauthRedirectUri(), StandardCharsets.UTF_8)
+                + "&client_id=" + config.oauthClientId()
+                + "&client_secret=" + config.oauthClientSecret();
+
+        // Each round trip is timed as its own login.phase, until its future completes. The follow-up calls
+        // start on an I/O thread, so the request's recorder is captured here
+        RequestTimings timings = RequestTimings.current();
+        return loginMetrics.timeAsync(timings, LoginMetrics.Flow.OAUTH, LoginMetrics.Phase.IDP_TOKEN,
+                        () -> ssoHttpClient.postFormAsync(config.oauthTokenUrl(), body))
+                .thenCompose(tokenResponse -> {
+                    JSONObject tokenJson = new JSONObject(tokenResponse);
+                    String idToken = tokenJson.optString("id_token", null);
+                    if (idToken != null && config.hasOidcDiscovery()) {
+                        return loginMetrics.timeAsync(timings, LoginMetrics.Flow.OAUTH, LoginMetrics.Phase.SIGNATURE,
+                                        () -> oidcKeyService.validateIdToken(config, idToken, nonce))
+                                .thenApply(OAuthLoginService::toUserInfo);
+                    }
+
+                    String accessToken = tokenJson.getString("access_token");
+                    return loginMetrics.timeAsync(timings, LoginMetrics.Flow.OAUTH, LoginMetrics.Phase.IDP_USERINFO,
+                                    () -> ssoHttpClient.getWithBearerAsync(config.oauthUserInfoUrl(), accessToken))
+                            .thenApply(JSONObject::new);
+                });
+    }
+
+    // Same shape as the userinfo response (name, email, ...)
+    private static JSONObject toUserInfo(JWTClaimsSet claims) {
+        JSONObject userInfo = new JSONObject(claims.toJSONObject());
+        if (!userInfo.has("name")) {
+            String name = (userInfo.optString("given_name") + " " + userInfo.optString("family_name")).trim();
+            if (!name.isEmpty()) userInfo.put("name", name);
+        }
+        return userInfo;
+    }
+
+    // ✅ Blocking: waits on the calling thread for both round trips
+    public JSONObject exchangeCode(SSOConfigSnapshot config, String code, String nonce) {
+        return SSOHttpClient.await(exchangeCodeAsync(config, code, nonce));
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jwk.AsymmetricJWK;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.BadJWTException;
+import com.nimbusds.jwt.proc.DefaultJWTClaimsVerifier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.core5.http.Header;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates OIDC id_tokens locally against the IdP's published signing keys.
+ * <p>
+ * The discovery document and JWKS are fetched once per SSO config version, kept in memory and
+ * revalidated in the background with {@code If-None-Match}. A token signed with an unknown
+ * {@code kid} (key rotation) triggers an immediate refresh, at most once per
+ * {@code sso.oidc.unknown-kid-refresh-interval}. A failed initial load is kept for the same interval,
+ * so an IdP whose discovery or JWKS endpoint is down is not hit again by every callback.
+ */
+@Service
+public class OIDCKeyService {
+
+    private static final Logger log = LoggerFactory.getLogger(OIDCKeyService.class);
+
+    private static final DefaultJWSVerifierFactory VERIFIER_FACTORY = new DefaultJWSVerifierFactory();
+
+    // Parsed discovery + JWKS for one config version; verifiers are built lazily per kid/alg
+    private record KeySet(long configVersion, String issuer, String jwksUri,
+                          String discoveryEtag, String jwksEtag, JWKSet jwkSet,
+                          Map<String, JWSVerifier> verifiers) {
+
+        KeySet(long configVersion, String issuer, String jwksUri, String discoveryEtag, String jwksEtag, JWKSet jwkSet) {
+            this(configVersion, issuer, jwksUri, discoveryEtag, jwksEtag, jwkSet, new ConcurrentHashMap<>());
+        }
+    }
+
+    // failedAt: when the fetch failed (its start time until then), for the retry backoff
+    private record Load(long configVersion, CompletableFuture<KeySet> keys, AtomicLong failedAt) {
+
+        Load(long configVersion, CompletableFuture<KeySet> keys) {
+            this(configVersion, keys, new AtomicLong(System.nanoTime()));
+        }
+    }
+
+    private final SSOHttpClient ssoHttpClient;
+    private final SSOConfigProvider ssoConfigProvider;
+    private final MeterRegistry meterRegistry;
+    private final long unknownKidRefreshNanos;
+    private final AtomicLong lastUnknownKidRefresh = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+
+    private volatile Load current;
+
+    public OIDCKeyService(SSOHttpClient ssoHttpClient,
+                          SSOConfigProvider ssoConfigProvider,
+                          MeterRegistry meterRegistry,
+                          @Value("${sso.oidc.unknown-kid-refresh-interval:30s}") Duration unknownKidRefreshInterval) {
+        this.ssoHttpClient = ssoHttpClient;
+        this.ssoConfigProvider = ssoConfigProvider;
+        this.meterRegistry = meterRegistry;
+        this.unknownKidRefreshNanos = unknownKidRefreshInterval.toNanos();
+    }
+
+    /**
+     * Verifies signature, issuer, audience (client id), expiry and nonce of an id_token.
+     * Completes exceptionally with {@link BadJWTException} when the token is not acceptable.
+     */
+    public CompletableFuture<JWTClaimsSet> validateIdToken(SSOConfigSnapshot config, String idToken, String nonce) {
+        SignedJWT jwt;
+        try {
+            jwt = SignedJWT.parse(idToken);
+        } catch (ParseException e) {
+            return CompletableFuture.failedFuture(new BadJWTException("Malformed id_token", e));
+        }
+
+        return keysFor(config).thenCompose(keys -> {
+            JWK key = findKey(keys, jwt.getHeader());
+            if (key != null || isHmac(jwt.getHeader())) {
+                return CompletableFuture.completedFuture(verify(config, keys, key, jwt, nonce));
+            }
+            // Unknown kid: the IdP may have rotated keys
+            return refreshForUnknownKid(config, keys).thenApply(fresh -> {
+                JWK rotated = findKey(fresh, jwt.getHeader());
+                if (rotated == null) {
+                    throw new CompletionException(new BadJWTException("Unknown signing key: " + jwt.getHeader().getKeyID()));
+                }
+                return verify(config, fresh, rotated, jwt, nonce);
+            });
+        });
+    }
+
+    // ✅ Background revalidation of discovery + JWKS (cheap 304s when nothing changed)
+    @Scheduled(fixedDelayString = "${sso.oidc.refresh-interval-ms:300000}",
+            initialDelayString = "${sso.oidc.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        Load load = current;
+        SSOConfigSnapshot config = ssoConfigProvider.current();
+        if (load == null || !config.hasOidcDiscovery()) return;
+
+        KeySet previous = load.keys().isDone() && !load.keys().isCompletedExceptionally() ? load.keys().join() : null;
+        if (previous == null || previous.configVersion() != config.version()) return;
+
+        fetch(config, previous).whenComplete((keys, error) -> {
+            if (error != null) {
+                log.warn("OIDC key refresh failed, keeping current keys: {}", error.getMessage());
+            }
+        });
+    }
+
+    private CompletableFuture<KeySet> keysFor(SSOConfigSnapshot config) {
+        Load load = current;
+        if (usable(load, config)) {
+            return load.keys();
+        }
+        synchronized (this) {
+            load = current;
+            if (!usable(load, config)) {
+                CompletableFuture<KeySet> keys = fetch(config, null);
+                Load started = new Load(config.version(), keys);
+                keys.whenComplete((loaded, error) -> {
+                    if (error != null) started.failedAt().set(System.nanoTime());
+                });
+                load = started;
+                current = load;
+            }
+            return load.keys();
+        }
+    }
+
+    // A failed load keeps answering (with its error) until the retry interval has passed
+    private boolean usable(Load load, SSOConfigSnapshot config) {
+        if (load == null || load.configVersion() != config.version()) return false;
+        if (!load.keys().isCompletedExceptionally()) return true;
+        if (System.nanoTime() - load.failedAt().get() < unknownKidRefreshNanos) {
+            refreshCounter("backoff").increment();
+            return true;
+        }
+        return false;
+    }
+
+    private CompletableFuture<KeySet> refreshForUnknownKid(SSOConfigSnapshot config, KeySet keys) {
+        long last = lastUnknownKidRefresh.get();
+        long now = System.nanoTime();
+        if (now - last < unknownKidRefreshNanos || !lastUnknownKidRefresh.compareAndSet(last, now)) {
+            refreshCounter("rate_limited").increment();
+            return CompletableFuture.completedFuture(keys);
+        }
+        return fetch(config, keys);
+    }
+
+    // Conditional fetch of discovery, then JWKS; publishes the result on success
+    private CompletableFuture<KeySet> fetch(SSOConfigSnapshot config, KeySet previous) {
+        return conditionalGet(config.oauthDiscoveryUrl(), previous != null ? previous.discoveryEtag() : null)
+                .thenCompose(discovery -> {
+                    String issuer;
+                    String jwksUri;
+                    String discoveryEtag;
+                    if (discovery.getCode() == 304 && previous != null) {
+                        issuer = previous.issuer();
+                        jwksUri = previous.jwksUri();
+                        discoveryEtag = previous.discoveryEtag();
+                    } else {
+                        JSONObject doc = new JSONObject(discovery.getBodyText());
+                        issuer = doc.getString("issuer");
+                        jwksUri = doc.getString("jwks_uri");
+                        discoveryEtag = etagOf(discovery);
+                    }
+
+                    boolean sameJwks = previous != null && jwksUri.equals(previous.jwksUri());
+                    return conditionalGet(jwksUri, sameJwks ? previous.jwksEtag() : null).thenApply(jwks -> {
+                        if (jwks.getCode() == 304 && sameJwks) {
+                            refreshCounter("not_modified").increment();
+                            return publish(config, new KeySet(config.version(), issuer, jwksUri, discoveryEtag,
+                                    previous.jwksEtag(), previous.jwkSet(), previous.verifiers()));
+                        }
+                        try {
+                            JWKSet jwkSet = JWKSet.parse(jwks.getBodyText());
+                            refreshCounter("updated").increment();
+                            return publish(config, new KeySet(config.version(), issuer, jwksUri, discoveryEtag, etagOf(jwks), jwkSet));
+                        } catch (ParseException e) {
+                            throw new CompletionException(new BadJWTException("Invalid JWKS at " + jwksUri, e));
+                        }
+                    });
+                })
+                .whenComplete((keys, error) -> {
+                    if (error != null) refreshCounter("failed").increment();
+                });
+    }
+
+    private KeySet publish(SSOConfigSnapshot config, KeySet keys) {
+        synchronized (this) {
+            Load load = current;
+            if (load == null || load.configVersion() == config.version()) {
+                current = new Load(config.version(), CompletableFuture.completedFuture(keys));
+            }
+        }
+        return keys;
+    }
+
+    private CompletableFuture<SimpleHttpResponse> conditionalGet(String url, String etag) {
+        SimpleRequestBuilder request = SimpleRequestBuilder.get(url).setHeader("Accept", "application/json");
+        if (etag != null) request.setHeader("If-None-Match", etag);
+        return ssoHttpClient.exchangeAsync(request.build()).thenApply(response -> {
+            int code = response.getCode();
+            if (code != 304 && (code < 200 || code >= 300)) {
+                throw new SSOHttpException("GET " + url + " returned HTTP " + code, code);
+            }
+            return response;
+        });
+    }
+
+    private JWTClaimsSet verify(SSOConfigSnapshot config, KeySet keys, JWK key, SignedJWT jwt, String nonce) {
+        try {
+            JWSHeader header = jwt.getHeader();
+            if (isHmac(header) && config.oauthClientSecret() == null) {
+                throw new BadJWTException("HMAC id_token but no client secret configured");
+            }
+            JWSVerifier verifier = isHmac(header)
+                    ? new MACVerifier(config.oauthClientSecret())  // HS* id_tokens are signed with the client secret
+                    : keys.verifiers().computeIfAbsent(key.getKeyID() + "/" + header.getAlgorithm(), k -> createVerifier(header, key));
+
+            if (!jwt.verify(verifier)) {
+                throw new BadJWTException("Invalid id_token signature");
+            }
+
+            JWTClaimsSet claims = jwt.getJWTClaimsSet();
+            new DefaultJWTClaimsVerifier<SecurityContext>(
+                    config.oauthClientId(),
+                    // The nonce this browser's authorization request sent: a token from another login won't do
+                    new JWTClaimsSet.Builder().issuer(keys.issuer()).claim("nonce", nonce).build(),
+                    Set.of("sub", "exp", "iat", "nonce"))
+                    .verify(claims, null);
+            return claims;
+        } catch (BadJWTException e) {
+            throw new CompletionException(e);
+        } catch (JOSEException | ParseException e) {
+            throw new CompletionException(new BadJWTException("id_token verification failed: " + e.getMessage(), e));
+        }
+    }
+
+    private static JWSVerifier createVerifier(JWSHeader header, JWK key) {
+        if (!(key instanceof AsymmetricJWK asymmetric) || !JWSAlgorithm.Family.SIGNATURE.contains(header.getAlgorithm())) {
+            throw new CompletionException(new BadJWTException("Unsupported id_token algorithm " + header.getAlgorithm()));
+        }
+        try {
+            return VERIFIER_FACTORY.createJWSVerifier(header, asymmetric.toPublicKey());
+        } catch (JOSEException e) {
+            throw new CompletionException(new BadJWTException("Unusable signing key " + key.getKeyID(), e));
+        }
+    }
+
+    private static JWK findKey(KeySet keys, JWSHeader header) {
+        String kid = header.getKeyID();
+        if (kid != null) return keys.jwkSet().getKeyByKeyId(kid);
+        // No kid: only unambiguous when the IdP publishes a single key
+        return keys.jwkSet().getKeys().size() == 1 ? keys.jwkSet().getKeys().get(0) : null;
+    }
+
+    private static boolean isHmac(JWSHeader header) {
+        return JWSAlgorithm.Family.HMAC_SHA.contains(header.getAlgorithm());
+    }
+
+    private static String etagOf(SimpleHttpResponse response) {
+        Header etag = response.getFirstHeader("ETag");
+        return etag != null ? etag.getValue() : null;
+    }
+
+    private Counter refreshCounter(String result) {
+        return Counter.builder("sso.oidc.keys.refresh")
+                .description("OIDC discovery/JWKS fetches by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
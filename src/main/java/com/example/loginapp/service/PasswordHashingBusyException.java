@@ -0,0 +1,15 @@
+package com.example.loginapp.service;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Password hashing pool is saturated; the request should be retried later (HTTP 503).
+ * An {@link org.springframework.security.core.AuthenticationException} so Spring's form-login
+ * failure handling sees it instead of a generic 500.
+ */
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.loginapp.service;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Parsing of PEM key material pasted into the SSO settings (public keys and X.509 certificates).
+ * Callers are expected to cache the result per config version; parsing is not cheap.
+ */
+public final class PemKeys {
+
+    private PemKeys() {}
+
+    // ✅ Accepts "BEGIN PUBLIC KEY" (RSA or EC) or "BEGIN CERTIFICATE"
+    public static PublicKey parsePublicKey(String pem) throws GeneralSecurityException {
+        if (pem.contains("BEGIN CERTIFICATE")) {
+            return parseCertificate(pem).getPublicKey();
+        }
+
+        X509EncodedKeySpec spec = new X509EncodedKeySpec(decode(pem));
+        try {
+            return KeyFactory.getInstance("RSA").generatePublic(spec);
+        } catch (GeneralSecurityException notRsa) {
+            return KeyFactory.getInstance("EC").generatePublic(spec);
+        }
+    }
+
+    // Certificates may be pasted with or without the BEGIN/END lines
+    public static X509Certificate parseCertificate(String pem) throws GeneralSecurityException {
+        byte[] der = decode(pem);
+        return (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(der));
+    }
+
+    private static byte[] decode(String pem) {
+        String base64 = pem.replaceAll("-----(BEGIN|END)[^-]*-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64.getBytes(StandardCharsets.US_ASCII));
+    }
+}
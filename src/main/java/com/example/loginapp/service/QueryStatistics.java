@@ -0,0 +1,122 @@
+package com.example.loginapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution times of every SQL statement the application runs (JPA and JdbcTemplate alike), fed by
+ * {@code InstrumentedDataSource}.
+ * <p>
+ * Per distinct SQL text it keeps the call count, total and worst time, and the bind-parameter shape of the
+ * worst run (types only, never values), for the admin top-N view. Statements over the slow threshold are
+ * logged with that shape. All statements also feed the {@code db.query{kind}} timer.
+ */
+@Service
+public class QueryStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryStatistics.class);
+
+    private static final String[] KINDS = {"select", "insert", "update", "delete", "other"};
+
+    public record Summary(String sql, long count, double totalMs, double avgMs, double maxMs,
+                          String slowestParameters) {}
+
+    private final ConcurrentHashMap<String, Entry> queries = new ConcurrentHashMap<>();
+    private final long slowThresholdNanos;
+    private final int maxTracked;
+    private final Timer[] timers = new Timer[KINDS.length];
+    private final Counter slowQueries;
+
+    public QueryStatistics(MeterRegistry meterRegistry,
+                           @Value("${db.query.slow-threshold:200ms}") Duration slowThreshold,
+                           @Value("${db.query.max-tracked:1000}") int maxTracked) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.maxTracked = maxTracked;
+        for (int i = 0; i < KINDS.length; i++) {
+            timers[i] = Timer.builder("db.query")
+                    .description("SQL statement execution time, until the first row is available")
+                    .tag("kind", KINDS[i])
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        this.slowQueries = Counter.builder("db.query.slow")
+                .description("SQL statements slower than db.query.slow-threshold")
+                .register(meterRegistry);
+    }
+
+    // ✅ One execution (or batch); parameters.toString() describes the bind shape and is only called when needed
+    public void record(String sql, Object parameters, long nanos) {
+        timers[kind(sql)].record(nanos, TimeUnit.NANOSECONDS);
+
+        Entry entry = queries.get(sql);
+        // Capped: JdbcTemplate IN lists and the like would otherwise grow the map without bound
+        if (entry == null && queries.size() < maxTracked) {
+            entry = queries.computeIfAbsent(sql, key -> new Entry());
+        }
+        if (entry != null) entry.add(nanos, parameters);
+
+        if (nanos >= slowThresholdNanos) {
+            slowQueries.increment();
+            log.warn("Slow query time_ms={} params={} sql={}", RequestTimings.millis(nanos), parameters, sql);
+        }
+    }
+
+    // ✅ Top-N statements by worst execution time since startup
+    public List<Summary> slowest(int limit) {
+        return queries.entrySet().stream()
+                .map(e -> e.getValue().summary(e.getKey()))
+                .sorted(Comparator.comparingDouble(Summary::maxMs).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private static int kind(String sql) {
+        int start = 0;
+        while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) start++;
+        for (int i = 0; i < KINDS.length - 1; i++) {
+            if (sql.regionMatches(true, start, KINDS[i], 0, KINDS[i].length())) return i;
+        }
+        // CTEs (WITH ... SELECT / INSERT) and DDL
+        return KINDS.length - 1;
+    }
+
+    private static final class Entry {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private volatile long maxNanos;
+        private volatile String maxParameters;
+
+        void add(long nanos, Object parameters) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos) {
+                synchronized (this) {
+                    if (nanos > maxNanos) {
+                        maxParameters = String.valueOf(parameters);
+                        maxNanos = nanos;
+                    }
+                }
+            }
+        }
+
+        Summary summary(String sql) {
+            long calls = count.sum();
+            long total = totalNanos.sum();
+            return new Summary(sql, calls, total / 1e6, calls == 0 ? 0 : total / 1e6 / calls, maxNanos / 1e6,
+                    maxParameters);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.loginapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Keeps reads that follow a write on this node on the primary until the replica has had time to catch up.
+ * <p>
+ * Writers record what they changed ({@link #wrote}); readers of the same key inside the window go through
+ * {@link ReplicaRouting#onPrimary}, everything else may use the replica. The window should comfortably exceed
+ * {@code db.replica.max-lag}. Writes made on other nodes are bounded by the caches' TTLs, as before.
+ */
+@Service
+public class ReadYourWrites {
+
+    private final Cache<String, Boolean> recentWrites;
+
+    public ReadYourWrites(@Value("${db.replica.read-your-writes-window:10s}") Duration window,
+                          @Value("${db.replica.read-your-writes-max-keys:100000}") long maxKeys) {
+        this.recentWrites = Caffeine.newBuilder().maximumSize(maxKeys).expireAfterWrite(window).build();
+    }
+
+    // ✅ Call after committing a change to key (a user identity, "admin:users", ...)
+    public void wrote(String key) {
+        recentWrites.put(key, Boolean.TRUE);
+    }
+
+    // ✅ Run read on the primary if key was written here within the window, else wherever routing sends it
+    public <T> T read(String key, Supplier<T> read) {
+        return recentWrites.getIfPresent(key) != null ? ReplicaRouting.onPrimary(read) : read.get();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.loginapp.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread override of read-replica routing.
+ * <p>
+ * With {@code db.replica.url} set, read-only transactions are served by the replica (see
+ * {@code ReplicaRoutingConfig}). Code that must see its own or another node's latest writes runs its reads
+ * inside {@link #onPrimary}. The choice is made when a transaction first touches the database, so call it
+ * outside any transaction. Without a replica it changes nothing.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReplicaRouting() {}
+
+    // ✅ Run the reads in work against the primary
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) PRIMARY.remove();
+        }
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY.get() != null;
+    }
+}
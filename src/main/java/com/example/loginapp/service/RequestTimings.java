@@ -0,0 +1,98 @@
+package com.example.loginapp.service;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Phase durations of one auth request, filled in by {@link LoginMetrics} alongside its timers and turned into
+ * a {@code Server-Timing} header and the slow-request log line by {@code ServerTimingFilter}.
+ * <p>
+ * Bound to the servlet thread while the request runs; async stages (the OAuth IdP calls, provisioning on the
+ * task executor) capture it up front and record into it from whichever thread they finish on.
+ */
+public final class RequestTimings {
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+    private static final LoginMetrics.Phase[] PHASES = LoginMetrics.Phase.values();
+
+    private final long startNanos;
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASES.length);
+    private volatile LoginMetrics.Flow flow;
+
+    public RequestTimings(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    // The recorder of the request running on this thread, or null outside the instrumented endpoints
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    public static void bind(RequestTimings timings) {
+        CURRENT.set(timings);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public long startNanos() {
+        return startNanos;
+    }
+
+    public LoginMetrics.Flow flow() {
+        return flow;
+    }
+
+    void flow(LoginMetrics.Flow flow) {
+        this.flow = flow;
+    }
+
+    void add(LoginMetrics.Phase phase, long nanos) {
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    // ✅ e.g. "config_lookup;dur=0.1, idp_token;dur=182.4, app;dur=201.7" (phases that did not run are left out)
+    // User lookup and BCrypt are reported together: apart, they would tell a caller whether the account exists
+    public String serverTiming(long nowNanos) {
+        StringBuilder header = new StringBuilder(96);
+        long credentials = 0;
+        for (LoginMetrics.Phase phase : PHASES) {
+            long nanos = phaseNanos.get(phase.ordinal());
+            if (phase == LoginMetrics.Phase.USER_LOOKUP || phase == LoginMetrics.Phase.BCRYPT) {
+                credentials += nanos;
+            } else if (nanos > 0) {
+                appendMetric(header, tag(phase), nanos);
+            }
+        }
+        if (credentials > 0) appendMetric(header, "credentials", credentials);
+        appendMetric(header, "app", nowNanos - startNanos);
+        return header.toString();
+    }
+
+    // ✅ logfmt pairs for the slow-request log: "flow=form bcrypt_ms=812.3 user_lookup_ms=2.1 ..."
+    public String phaseBreakdown() {
+        StringBuilder line = new StringBuilder(128);
+        line.append("flow=").append(flow == null ? "none" : tag(flow));
+        for (LoginMetrics.Phase phase : PHASES) {
+            long nanos = phaseNanos.get(phase.ordinal());
+            if (nanos > 0) line.append(' ').append(tag(phase)).append("_ms=").append(millis(nanos));
+        }
+        return line.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (!header.isEmpty()) header.append(", ");
+        header.append(name).append(";dur=").append(millis(nanos));
+    }
+
+    // Milliseconds with one decimal, without String.format
+    public static String millis(long nanos) {
+        long tenths = (nanos + 50_000) / 100_000;
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.loginapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Pre-rendered SAML SP artifacts for the configured SP base URL ({@code sso.saml.sp-base-url}).
+ * <p>
+ * The entity ID and ACS URL come from configuration, never from the request's Host header: the callback
+ * checks an assertion's Audience and Destination against them, and a client-chosen host would let an
+ * assertion issued for another SP of the same IdP pass those checks.
+ * <p>
+ * The AuthnRequest is kept as UTF-8 byte segments around its ID and IssueInstant, so a redirect only
+ * splices in a fresh random ID and the current second, then deflates with a pooled {@link Deflater}.
+ * The SP metadata document is rendered once and served as bytes with a content-derived ETag.
+ */
+@Service
+public class SAMLArtifactCache {
+
+    public record AuthnRequest(String id, String samlRequest) {}
+
+    public record Metadata(String etag, byte[] body) {}
+
+    // Appended to the base URL: the SP entity ID (the metadata URL) and the ACS (callback) URL
+    public static final String METADATA_PATH = "/sso/saml/metadata";
+    public static final String ACS_PATH = "/sso/saml/callback";
+
+    private record Rendered(byte[] requestHead, byte[] requestMiddle, byte[] requestTail, Metadata metadata) {}
+
+    private static final String ID_MARKER = "\u0000ID\u0000";
+    private static final String INSTANT_MARKER = "\u0000INSTANT\u0000";
+
+    private final String entityId;
+    private final String acsUrl;
+    private final Rendered rendered;
+    private final BlockingQueue<Deflater> deflaters;
+    private final SecureRandom random = new SecureRandom();
+
+    public SAMLArtifactCache(@Value("${sso.saml.sp-base-url}") String spBaseUrl,
+                             @Value("${sso.saml.require-signature:true}") boolean wantAssertionsSigned,
+                             @Value("${sso.saml.deflater-pool-size:0}") int deflaterPoolSize) {
+        String baseUrl = spBaseUrl.endsWith("/") ? spBaseUrl.substring(0, spBaseUrl.length() - 1) : spBaseUrl;
+        this.entityId = baseUrl + METADATA_PATH;
+        this.acsUrl = baseUrl + ACS_PATH;
+        this.rendered = render(entityId, acsUrl, wantAssertionsSigned);
+        this.deflaters = new ArrayBlockingQueue<>(deflaterPoolSize > 0
+                ? deflaterPoolSize
+                : 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    // The SP entity ID: our AuthnRequest issuer, and the audience assertions must be restricted to
+    public String entityId() {
+        return entityId;
+    }
+
+    // Where the IdP posts responses: the Response Destination must be this
+    public String acsUrl() {
+        return acsUrl;
+    }
+
+    // ✅ Deflated, Base64- and URL-encoded AuthnRequest for the HTTP-Redirect binding
+    public AuthnRequest authnRequest() {
+        byte[] idBytes = new byte[16];
+        random.nextBytes(idBytes);
+        String id = "_" + HexFormat.of().formatHex(idBytes);
+        byte[] issueInstant = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString()
+                .getBytes(StandardCharsets.US_ASCII);
+
+        byte[] xml = concat(rendered.requestHead(), id.getBytes(StandardCharsets.US_ASCII),
+                rendered.requestMiddle(), issueInstant, rendered.requestTail());
+        String base64 = Base64.getEncoder().encodeToString(deflate(xml));
+        return new AuthnRequest(id, urlEncodeBase64(base64));
+    }
+
+    // ✅ SP metadata (EntityDescriptor)
+    public Metadata metadata() {
+        return rendered.metadata();
+    }
+
+    private static Rendered render(String rawEntityId, String rawAcsUrl, boolean wantAssertionsSigned) {
+        String acsUrl = xmlEscape(rawAcsUrl);
+        String entityId = xmlEscape(rawEntityId);
+
+        String authnRequest = """
+            <samlp:AuthnRequest xmlns:samlp="urn:oasis:names:tc:SAML:2.0:protocol" \
+            ID="%s" Version="2.0" IssueInstant="%s" \
+            ProtocolBinding="urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST" \
+            AssertionConsumerServiceURL="%s">\
+            <saml:Issuer xmlns:saml="urn:oasis:names:tc:SAML:2.0:assertion">%s</saml:Issuer>\
+            <samlp:NameIDPolicy AllowCreate="true" Format="urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress"/>\
+            </samlp:AuthnRequest>""".formatted(ID_MARKER, INSTANT_MARKER, acsUrl, entityId);
+
+        int id = authnRequest.indexOf(ID_MARKER);
+        int instant = authnRequest.indexOf(INSTANT_MARKER);
+        byte[] head = authnRequest.substring(0, id).getBytes(StandardCharsets.UTF_8);
+        byte[] middle = authnRequest.substring(id + ID_MARKER.length(), instant).getBytes(StandardCharsets.UTF_8);
+        byte[] tail = authnRequest.substring(instant + INSTANT_MARKER.length()).getBytes(StandardCharsets.UTF_8);
+
+        byte[] metadata = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<EntityDescriptor xmlns=\"urn:oasis:names:tc:SAML:2.0:metadata\" entityID=\"" + entityId + "\">"
+                + "<SPSSODescriptor WantAssertionsSigned=\"" + wantAssertionsSigned + "\" AuthnRequestsSigned=\"false\" protocolSupportEnumeration=\"urn:oasis:names:tc:SAML:2.0:protocol\">"
+                + "<AssertionConsumerService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-POST\" Location=\"" + acsUrl + "\" index=\"1\"/>"
+                + "</SPSSODescriptor>"
+                + "</EntityDescriptor>").getBytes(StandardCharsets.UTF_8);
+
+        return new Rendered(head, middle, tail, new Metadata("\"" + sha256(metadata) + "\"", metadata));
+    }
+
+    // Raw DEFLATE (no zlib header), as the HTTP-Redirect binding requires
+    private byte[] deflate(byte[] input) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] out = new byte[input.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) out = Arrays.copyOf(out, out.length * 2);
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end(); // pool full: release the native zlib state now rather than at GC
+            }
+        }
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) length += part.length;
+        byte[] out = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, out, offset, part.length);
+            offset += part.length;
+        }
+        return out;
+    }
+
+    // Base64 only needs '+', '/' and '=' escaped in a query string
+    private static String urlEncodeBase64(String base64) {
+        StringBuilder encoded = new StringBuilder(base64.length() + 16);
+        for (int i = 0; i < base64.length(); i++) {
+            char c = base64.charAt(i);
+            switch (c) {
+                case '+' -> encoded.append("%2B");
+                case '/' -> encoded.append("%2F");
+                case '=' -> encoded.append("%3D");
+                default -> encoded.append(c);
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String xmlEscape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SAMLAssertion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * One-time use of SAML assertions, and correlation of SP-initiated responses with the AuthnRequests sent.
+ * <p>
+ * A captured signed SAMLResponse stays valid until its NotOnOrAfter; without this, every replay of it
+ * would sign in again. Assertion IDs are remembered until NotOnOrAfter plus the clock skew (after which
+ * the validity check rejects the assertion anyway), and a second use is refused. A response carrying
+ * {@code InResponseTo} must answer the AuthnRequest this browser was sent with, which
+ * {@link SSOLoginState} keeps in a single-use cookie (nothing is stored per request on the server, so
+ * unauthenticated {@code /sso/saml/login} requests cannot fill a cache). IdP-initiated responses carry no
+ * InResponseTo.
+ * <p>
+ * The assertion cache is per node and bounded ({@code sso.saml.replay-cache-size}); a replay that reaches
+ * another node is still refused once the assertion expires.
+ */
+@Service
+public class SAMLReplayGuard {
+
+    private final Cache<String, Instant> seenAssertions;
+    private final Duration clockSkew;
+    private final boolean checkInResponseTo;
+
+    public SAMLReplayGuard(@Value("${sso.saml.clock-skew:60s}") Duration clockSkew,
+                           @Value("${sso.saml.replay-cache-size:100000}") long maxEntries,
+                           @Value("${sso.saml.check-in-response-to:true}") boolean checkInResponseTo) {
+        this.clockSkew = clockSkew;
+        this.checkInResponseTo = checkInResponseTo;
+        this.seenAssertions = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new UntilExpiry())
+                .build();
+    }
+
+    /**
+     * Throws SAMLResponseException for a replayed assertion or an unsolicited InResponseTo; call after
+     * verification. {@code requestId} is the AuthnRequest this browser started with (null if none).
+     */
+    public void accept(SAMLAssertion assertion, String requestId) {
+        String inResponseTo = assertion.inResponseTo();
+        if (checkInResponseTo && inResponseTo != null && !inResponseTo.equals(requestId)) {
+            throw new SAMLResponseException("InResponseTo does not match the request this browser started");
+        }
+        if (assertion.assertionId() == null || assertion.assertionId().isEmpty()) {
+            throw new SAMLResponseException("Assertion has no ID");
+        }
+        if (assertion.notOnOrAfter() == null) {
+            throw new SAMLResponseException("Assertion has no NotOnOrAfter; it could be replayed indefinitely");
+        }
+        Instant forgetAt = assertion.notOnOrAfter().plus(clockSkew);
+        if (seenAssertions.asMap().putIfAbsent(assertion.assertionId(), forgetAt) != null) {
+            throw new SAMLResponseException("Assertion has already been used");
+        }
+    }
+
+    // Each assertion ID is kept until its own NotOnOrAfter (+ skew)
+    private static final class UntilExpiry implements Expiry<String, Instant> {
+
+        @Override
+        public long expireAfterCreate(String key, Instant forgetAt, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), forgetAt).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Instant forgetAt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Instant forgetAt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.loginapp.service;
+
+/**
+ * A SAMLResponse that could not be read or was rejected (malformed, DTD, encrypted assertion, ...).
+ */
+public class SAMLResponseException extends RuntimeException {
+
+    public SAMLResponseException(String message) {
+        super(message);
+    }
+
+    public SAMLResponseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SAMLAssertion;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming, namespace-aware reader for the SAMLResponse an IdP POSTs to the ACS endpoint.
+ * <p>
+ * Decodes the Base64 form value straight to bytes for a StAX reader — no intermediate String, no DOM —
+ * and picks out the status, NameID, conditions and attributes in one pass. Elements are matched by
+ * namespace URI, so any prefix the IdP chooses works. The shared {@link XMLInputFactory} is created
+ * once and hardened: DTDs and external entities are refused outright (no XXE, no entity expansion).
+ */
+public final class SAMLResponseReader {
+
+    static final String PROTOCOL_NS = "urn:oasis:names:tc:SAML:2.0:protocol";
+    static final String ASSERTION_NS = "urn:oasis:names:tc:SAML:2.0:assertion";
+    static final String DSIG_NS = "http://www.w3.org/2000/09/xmldsig#";
+
+    private static final XMLInputFactory FACTORY = hardenedFactory();
+
+    private SAMLResponseReader() {
+    }
+
+    // ✅ Read a Base64-encoded SAMLResponse (HTTP-POST binding)
+    public static SAMLAssertion read(String base64Response) {
+        return read(decode(base64Response));
+    }
+
+    // Decoded once into bytes (the JDK's Base64 wrap() stream reads byte by byte and is ~4x slower);
+    // the same bytes can then be handed to signature verification
+    public static byte[] decode(String base64Response) {
+        try {
+            return Base64.getMimeDecoder().decode(base64Response);
+        } catch (IllegalArgumentException e) {
+            throw new SAMLResponseException("SAMLResponse is not valid Base64", e);
+        }
+    }
+
+    // ✅ Read an already decoded SAMLResponse; the parser detects the encoding itself
+    public static SAMLAssertion read(byte[] xml) {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+            return read(reader);
+        } catch (XMLStreamException e) {
+            throw new SAMLResponseException("Malformed SAMLResponse: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // nothing left to release
+                }
+            }
+        }
+    }
+
+    private static SAMLAssertion read(XMLStreamReader reader) throws XMLStreamException {
+        String responseId = null, inResponseTo = null, destination = null, statusCode = null;
+        String assertionId = null, issuer = null, nameId = null, nameIdFormat = null;
+        boolean signed = false;
+        Instant notBefore = null, notOnOrAfter = null;
+        List<String> audiences = new ArrayList<>();
+        Map<String, List<String>> attributes = new LinkedHashMap<>();
+
+        // Local names of the open SAML elements; only the first assertion's content is read
+        Deque<String> path = new ArrayDeque<>();
+        boolean inAssertion = false, assertionDone = false;
+        int assertionDepth = -1;
+        String attributeName = null;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.DTD) {
+                throw new SAMLResponseException("SAMLResponse must not contain a DTD");
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String ended = path.pop();
+                if (inAssertion && path.size() == assertionDepth) {
+                    inAssertion = false;
+                    assertionDone = true;
+                }
+                if ("Attribute".equals(ended)) attributeName = null;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+
+            String ns = reader.getNamespaceURI();
+            String name = reader.getLocalName();
+            String parent = path.peek();
+
+            if (DSIG_NS.equals(ns)) {
+                if ("Signature".equals(name)) signed = true;
+                path.push(name);
+                continue;
+            }
+
+            if (PROTOCOL_NS.equals(ns)) {
+                if ("Response".equals(name) && parent == null) {
+                    responseId = reader.getAttributeValue(null, "ID");
+                    inResponseTo = reader.getAttributeValue(null, "InResponseTo");
+                    destination = reader.getAttributeValue(null, "Destination");
+                } else if ("StatusCode".equals(name) && "Status".equals(parent) && statusCode == null) {
+                    statusCode = reader.getAttributeValue(null, "Value");
+                }
+                path.push(name);
+                continue;
+            }
+
+            if (ASSERTION_NS.equals(ns)) {
+                if ("EncryptedAssertion".equals(name)) {
+                    throw new SAMLResponseException("Encrypted assertions are not supported");
+                }
+                if ("Assertion".equals(name) && "Response".equals(parent) && !assertionDone) {
+                    inAssertion = true;
+                    assertionDepth = path.size();
+                    assertionId = reader.getAttributeValue(null, "ID");
+                } else if (inAssertion) {
+                    switch (name) {
+                        case "Issuer" -> {
+                            if ("Assertion".equals(parent)) {
+                                issuer = text(reader);
+                                continue; // text() consumed the end tag
+                            }
+                        }
+                        case "NameID" -> {
+                            if ("Subject".equals(parent)) {
+                                nameIdFormat = reader.getAttributeValue(null, "Format");
+                                nameId = text(reader);
+                                continue;
+                            }
+                        }
+                        case "Conditions" -> {
+                            notBefore = instant(reader.getAttributeValue(null, "NotBefore"));
+                            notOnOrAfter = instant(reader.getAttributeValue(null, "NotOnOrAfter"));
+                        }
+                        case "Audience" -> {
+                            audiences.add(text(reader));
+                            continue;
+                        }
+                        case "Attribute" -> attributeName = reader.getAttributeValue(null, "Name");
+                        case "AttributeValue" -> {
+                            if (attributeName != null) {
+                                attributes.computeIfAbsent(attributeName, key -> new ArrayList<>()).add(text(reader));
+                                continue;
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                } else if ("Issuer".equals(name) && "Response".equals(parent) && issuer == null) {
+                    issuer = text(reader); // Response-level issuer, replaced by the assertion's own if present
+                    continue;
+                }
+            }
+            path.push(name);
+        }
+
+        if (assertionId == null && nameId == null) {
+            throw new SAMLResponseException("SAMLResponse contains no assertion");
+        }
+
+        attributes.replaceAll((key, values) -> List.copyOf(values));
+        return new SAMLAssertion(responseId, inResponseTo, destination, statusCode,
+                assertionId, issuer, nameId, nameIdFormat, signed,
+                notBefore, notOnOrAfter, List.copyOf(audiences), Collections.unmodifiableMap(attributes));
+    }
+
+    // Text content of the current element (nested markup is skipped), leaving the reader on its end tag
+    private static String text(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE ->
+                        text.append(reader.getText());
+                case XMLStreamConstants.START_ELEMENT -> depth++;
+                case XMLStreamConstants.END_ELEMENT -> depth--;
+                default -> {
+                }
+            }
+        }
+        return text.toString().trim();
+    }
+
+    private static Instant instant(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new SAMLResponseException("Invalid SAML timestamp: " + value, e);
+        }
+    }
+
+    private static XMLInputFactory hardenedFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setXMLResolver((publicId, systemId, baseUri, namespace) -> {
+            throw new XMLStreamException("External entities are not allowed: " + systemId);
+        });
+        return factory;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SAMLAssertion;
+import com.example.loginapp.model.SSOConfigSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.XMLConstants;
+import javax.xml.crypto.KeySelector;
+import javax.xml.crypto.MarshalException;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * XML-DSig verification of the SAMLResponse against the IdP certificate from the SSO settings.
+ * <p>
+ * The certificate (or bare public key) is parsed once per SSO config version, like the JWT verifiers.
+ * The hardened {@link DocumentBuilderFactory} is shared, and each thread reuses its own DocumentBuilder
+ * and {@link XMLSignatureFactory} (neither is thread-safe), so a callback pays for one DOM parse and the
+ * RSA/EC check only. Either the assertion or the whole response must carry an enveloped signature whose
+ * single reference points at that element, and it must be the same assertion {@link SAMLResponseReader}
+ * read — signature wrapping can't smuggle in an unsigned assertion.
+ */
+@Service
+public class SAMLSignatureVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(SAMLSignatureVerifier.class);
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDERS = hardenedDocumentBuilderFactory();
+
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(() -> {
+        try {
+            return DOCUMENT_BUILDERS.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // Fatal errors still throw; nothing is printed
+    private static final ErrorHandler SILENT = new DefaultHandler();
+
+    private static final ThreadLocal<XMLSignatureFactory> SIGNATURE_FACTORY =
+            ThreadLocal.withInitial(() -> XMLSignatureFactory.getInstance("DOM"));
+
+    private record Trust(long configVersion, PublicKey key) {}
+
+    private volatile Trust current;
+
+    // ✅ True when an IdP certificate or public key is configured and parses
+    public boolean isConfigured(SSOConfigSnapshot config) {
+        return trustFor(config).key() != null;
+    }
+
+    // ✅ Throws SAMLResponseException unless the response (or its assertion) is signed by the configured IdP key
+    public void verify(SSOConfigSnapshot config, byte[] xml, SAMLAssertion assertion) {
+        PublicKey key = trustFor(config).key();
+        if (key == null) {
+            throw new SAMLResponseException("No usable SAML IdP certificate is configured");
+        }
+
+        Document document = parse(xml);
+        Element response = document.getDocumentElement();
+        if (!SAMLResponseReader.PROTOCOL_NS.equals(response.getNamespaceURI())
+                || !"Response".equals(response.getLocalName())) {
+            throw new SAMLResponseException("Document element is not a SAML Response");
+        }
+
+        // Exactly one assertion, and it is the one the reader took the NameID and attributes from
+        if (document.getElementsByTagNameNS(SAMLResponseReader.ASSERTION_NS, "Assertion").getLength() != 1) {
+            throw new SAMLResponseException("SAMLResponse must contain exactly one assertion");
+        }
+        Element assertionElement = child(response, SAMLResponseReader.ASSERTION_NS, "Assertion");
+        if (assertionElement == null || !assertionElement.getAttribute("ID").equals(assertion.assertionId())) {
+            throw new SAMLResponseException("Signed assertion does not match the assertion that was read");
+        }
+
+        // The assertion's own signature is preferred; a signed Response covers its assertion too
+        Element signed = assertionElement;
+        Element signature = child(assertionElement, SAMLResponseReader.DSIG_NS, "Signature");
+        if (signature == null) {
+            signed = response;
+            signature = child(response, SAMLResponseReader.DSIG_NS, "Signature");
+        }
+        if (signature == null) {
+            throw new SAMLResponseException("SAMLResponse is not signed");
+        }
+
+        String id = signed.getAttribute("ID");
+        if (id.isEmpty()) {
+            throw new SAMLResponseException("Signed element has no ID");
+        }
+        signed.setIdAttributeNS(null, "ID", true);
+
+        try {
+            DOMValidateContext context = new DOMValidateContext(KeySelector.singletonKeySelector(key), signature);
+            context.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.TRUE);
+            XMLSignature xmlSignature = SIGNATURE_FACTORY.get().unmarshalXMLSignature(context);
+
+            List<?> references = xmlSignature.getSignedInfo().getReferences();
+            if (references.size() != 1 || !("#" + id).equals(((Reference) references.get(0)).getURI())) {
+                throw new SAMLResponseException("Signature must reference the signed element only");
+            }
+            if (!xmlSignature.validate(context)) {
+                throw new SAMLResponseException("SAML signature is invalid");
+            }
+        } catch (MarshalException | XMLSignatureException e) {
+            throw new SAMLResponseException("SAML signature could not be checked: " + e.getMessage(), e);
+        }
+    }
+
+    private Trust trustFor(SSOConfigSnapshot config) {
+        Trust trust = current;
+        if (trust == null || trust.configVersion() != config.version()) {
+            trust = build(config);
+            current = trust;
+        }
+        return trust;
+    }
+
+    private static Trust build(SSOConfigSnapshot config) {
+        String pem = config.samlCertificate();
+        if (pem == null || pem.isBlank()) {
+            return new Trust(config.version(), null);
+        }
+        try {
+            // Certificates may be pasted without BEGIN/END lines; a bare "BEGIN PUBLIC KEY" is accepted too
+            if (pem.contains("BEGIN PUBLIC KEY")) {
+                return new Trust(config.version(), PemKeys.parsePublicKey(pem));
+            }
+            X509Certificate certificate = PemKeys.parseCertificate(pem);
+            if (certificate.getNotAfter().before(new Date())) {
+                // IdP signing certificates are often long-expired self-signed ones; trust is by key, so only warn
+                log.warn("SAML IdP certificate expired on {}", certificate.getNotAfter());
+            }
+            return new Trust(config.version(), certificate.getPublicKey());
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            log.warn("SAML IdP certificate unusable: {}", e.getMessage());
+            return new Trust(config.version(), null);
+        }
+    }
+
+    private static Document parse(byte[] xml) {
+        DocumentBuilder builder = DOCUMENT_BUILDER.get();
+        try {
+            builder.setErrorHandler(SILENT); // report through the exception only, not the default stderr handler
+            return builder.parse(new ByteArrayInputStream(xml));
+        } catch (SAXException | IOException e) {
+            throw new SAMLResponseException("Malformed SAMLResponse: " + e.getMessage(), e);
+        } finally {
+            builder.reset();
+        }
+    }
+
+    private static Element child(Element parent, String namespace, String localName) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element element && namespace.equals(element.getNamespaceURI())
+                    && localName.equals(element.getLocalName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static DocumentBuilderFactory hardenedDocumentBuilderFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("XML parser cannot be hardened", e);
+        }
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        return factory;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SSOConfig;
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.example.loginapp.repository.SSOConfigRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory holder for the active SSO configuration.
+ * <p>
+ * Controllers read an immutable {@link SSOConfigSnapshot} from here instead of querying
+ * {@code sso_config} on every login. The snapshot is swapped atomically after an admin saves
+ * new settings, and re-read periodically so other nodes pick up changes made elsewhere.
+ */
+@Service
+public class SSOConfigProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(SSOConfigProvider.class);
+
+    private final SSOConfigRepository ssoConfigRepository;
+    private final AtomicLong versions = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer reloadTimer;
+
+    private volatile SSOConfigSnapshot current;
+
+    public SSOConfigProvider(SSOConfigRepository ssoConfigRepository, MeterRegistry meterRegistry) {
+        this.ssoConfigRepository = ssoConfigRepository;
+        this.hits = Counter.builder("sso.config.cache")
+                .tag("result", "hit")
+                .description("SSO config lookups served from the in-memory snapshot")
+                .register(meterRegistry);
+        this.misses = Counter.builder("sso.config.cache")
+                .tag("result", "miss")
+                .description("SSO config lookups that had to load from the database")
+                .register(meterRegistry);
+        this.reloadTimer = Timer.builder("sso.config.reload")
+                .description("Time taken to reload the SSO config snapshot from the database")
+                .register(meterRegistry);
+        meterRegistry.gauge("sso.config.version", versions);
+    }
+
+    // ✅ Current snapshot (never null; check isConfigured() for "no settings saved yet")
+    public SSOConfigSnapshot current() {
+        SSOConfigSnapshot snapshot = current;
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+        misses.increment();
+        return reload();
+    }
+
+    // ✅ Save settings and publish them to all readers once the transaction has committed
+    @Transactional
+    public void save(SSOConfig config) {
+        SSOConfigSnapshot saved = SSOConfigSnapshot.of(0, ssoConfigRepository.save(config));
+        // A failed commit must not leave this node serving settings that were never stored
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(saved);
+            }
+        });
+    }
+
+    // ✅ Re-read the latest row from the database
+    public SSOConfigSnapshot reload() {
+        return reloadTimer.record(() -> publish(SSOConfigSnapshot.of(0, ssoConfigRepository.findTopByOrderByIdDesc())));
+    }
+
+    // Picks up changes saved through another node
+    @Scheduled(fixedDelayString = "${sso.config.refresh-interval-ms:60000}",
+            initialDelayString = "${sso.config.refresh-interval-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // Keep serving the last good snapshot if the database is briefly unavailable
+            log.warn("SSO config refresh failed, keeping version {}", versions.get(), e);
+        }
+    }
+
+    private synchronized SSOConfigSnapshot publish(SSOConfigSnapshot loaded) {
+        SSOConfigSnapshot previous = current;
+        if (previous != null && previous.sameSettingsAs(loaded)) {
+            // Unchanged: keep the old version so caches derived from it stay valid
+            return previous;
+        }
+        SSOConfigSnapshot next = loaded.withVersion(versions.incrementAndGet());
+        current = next;
+        log.info("Published {}", next);
+        return next;
+    }
+}
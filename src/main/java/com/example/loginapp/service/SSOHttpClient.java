@@ -0,0 +1,204 @@
+package com.example.loginapp.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.net.URIAuthority;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToIntFunction;
+
+/**
+ * Outbound calls to IdP endpoints taken from the SSO settings.
+ * <p>
+ * Every call goes through the shared pooled client from {@code SSOHttpClientConfig} and is bounded
+ * by a total deadline ({@code sso.http.total-timeout}) on top of the connect/read timeouts, so a
+ * slow IdP can't hold a caller indefinitely. Latency and pool usage are recorded per IdP host.
+ */
+@Service
+public class SSOHttpClient {
+
+    private final CloseableHttpAsyncClient client;
+    private final PoolingAsyncClientConnectionManager connectionManager;
+    private final MeterRegistry meterRegistry;
+    private final Duration totalTimeout;
+    private final Set<String> instrumentedHosts = ConcurrentHashMap.newKeySet();
+
+    public SSOHttpClient(CloseableHttpAsyncClient ssoHttpAsyncClient,
+                         PoolingAsyncClientConnectionManager ssoConnectionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${sso.http.total-timeout:8s}") Duration totalTimeout) {
+        this.client = ssoHttpAsyncClient;
+        this.connectionManager = ssoConnectionManager;
+        this.meterRegistry = meterRegistry;
+        this.totalTimeout = totalTimeout;
+    }
+
+    // ✅ POST an application/x-www-form-urlencoded body (e.g. OAuth token exchange)
+    public CompletableFuture<String> postFormAsync(String url, String formBody) {
+        return executeAsync(SimpleRequestBuilder.post(url)
+                .setHeader("Accept", "application/json")
+                .setBody(formBody, ContentType.APPLICATION_FORM_URLENCODED)
+                .build());
+    }
+
+    // ✅ GET with a bearer token (e.g. OAuth userinfo)
+    public CompletableFuture<String> getWithBearerAsync(String url, String accessToken) {
+        return executeAsync(SimpleRequestBuilder.get(url)
+                .setHeader("Accept", "application/json")
+                .setHeader("Authorization", "Bearer " + accessToken)
+                .build());
+    }
+
+    public String postForm(String url, String formBody) {
+        return await(postFormAsync(url, formBody));
+    }
+
+    public String getWithBearer(String url, String accessToken) {
+        return await(getWithBearerAsync(url, accessToken));
+    }
+
+    /**
+     * Sends the request and completes with the response body for 2xx responses; otherwise completes
+     * exceptionally with {@link SSOHttpException}.
+     */
+    public CompletableFuture<String> executeAsync(SimpleHttpRequest request) {
+        return exchangeAsync(request).thenApply(response -> {
+            if (response.getCode() < 200 || response.getCode() >= 300) {
+                throw new SSOHttpException(request.getMethod() + " " + hostOf(request) + " returned HTTP " + response.getCode(), response.getCode());
+            }
+            return response.getBodyText();
+        });
+    }
+
+    /**
+     * Sends the request and completes with whatever response the IdP returned (any status), or
+     * exceptionally with {@link SSOHttpException} on timeout / I/O failure. Used for conditional
+     * requests where 304 is an expected answer.
+     */
+    public CompletableFuture<SimpleHttpResponse> exchangeAsync(SimpleHttpRequest request) {
+        String host = hostOf(request);
+        instrumentPool(host);
+        long start = System.nanoTime();
+
+        CompletableFuture<SimpleHttpResponse> result = new CompletableFuture<>();
+        Future<SimpleHttpResponse> exchange = client.execute(request, new FutureCallback<>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                result.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+
+        return result
+                .orTimeout(totalTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((response, error) -> {
+                    String outcome = outcomeOf(response, error);
+                    timer(host, request.getMethod(), outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        if (cause instanceof TimeoutException) {
+                            // Abort the exchange so the pooled connection is released
+                            exchange.cancel(true);
+                            throw new SSOHttpException(request.getMethod() + " " + host + " exceeded " + totalTimeout, cause);
+                        }
+                        throw new SSOHttpException(request.getMethod() + " " + host + " failed: " + cause.getMessage(), cause);
+                    }
+                    return response;
+                });
+    }
+
+    // Blocking helper for callers on a servlet thread; unwraps the async failure
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private Timer timer(String host, String method, String outcome) {
+        return Timer.builder("sso.http.client.requests")
+                .description("Outbound calls to IdP endpoints")
+                .tags("host", host, "method", method, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String outcomeOf(SimpleHttpResponse response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return cause instanceof TimeoutException ? "TIMEOUT" : "IO_ERROR";
+        }
+        int code = response.getCode();
+        if (code >= 500) return "SERVER_ERROR";
+        if (code >= 400) return "CLIENT_ERROR";
+        return "SUCCESS";
+    }
+
+    // Per-host pool gauges, registered the first time we talk to a host
+    private void instrumentPool(String host) {
+        if (!instrumentedHosts.add(host)) return;
+        poolGauge(host, "leased", "Connections currently in use", PoolStats::getLeased);
+        poolGauge(host, "pending", "Requests waiting for a connection", PoolStats::getPending);
+        poolGauge(host, "available", "Idle keep-alive connections", PoolStats::getAvailable);
+        poolGauge(host, "max", "Connection limit for the host", PoolStats::getMax);
+    }
+
+    private void poolGauge(String host, String name, String description, ToIntFunction<PoolStats> stat) {
+        Gauge.builder("sso.http.client.pool." + name, connectionManager, cm -> sumStats(cm, host, stat))
+                .tag("host", host)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private static double sumStats(PoolingAsyncClientConnectionManager cm, String host, ToIntFunction<PoolStats> stat) {
+        int total = 0;
+        for (HttpRoute route : cm.getRoutes()) {
+            HttpHost target = route.getTargetHost();
+            if (host.equalsIgnoreCase(target.getHostName() + ":" + target.getPort())) {
+                total += stat.applyAsInt(cm.getStats(route));
+            }
+        }
+        return total;
+    }
+
+    // host:port as the connection pool sees it (default port filled in from the scheme)
+    private static String hostOf(SimpleHttpRequest request) {
+        URIAuthority authority = request.getAuthority();
+        if (authority == null) return "unknown";
+        int port = authority.getPort();
+        if (port < 0) port = "https".equalsIgnoreCase(request.getScheme()) ? 443 : 80;
+        return authority.getHostName() + ":" + port;
+    }
+}
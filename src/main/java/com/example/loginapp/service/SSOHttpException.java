@@ -0,0 +1,22 @@
+package com.example.loginapp.service;
+
+/**
+ * Failed call to an IdP endpoint: non-2xx status, timeout, or I/O error.
+ */
+public class SSOHttpException extends RuntimeException {
+
+    private final int status;
+
+    public SSOHttpException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    public SSOHttpException(String message, Throwable cause) {
+        super(message, cause);
+        this.status = 0;
+    }
+
+    // HTTP status returned by the IdP, or 0 when no response was received
+    public int getStatus() { return status; }
+}
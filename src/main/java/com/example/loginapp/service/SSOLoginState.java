@@ -0,0 +1,109 @@
+package com.example.loginapp.service;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * What a browser's SSO login must come back with, kept between the redirect to the IdP and the callback.
+ * <p>
+ * The values live in a short-lived HttpOnly cookie scoped to {@code /sso}, not in the HTTP session, so the
+ * check works on any node and in COOKIE security-context mode. For OAuth they are the {@code state} sent
+ * with the authorization request, which the callback must return in the same browser (no login CSRF: a
+ * victim's browser cannot be made to complete the attacker's login), and the OIDC {@code nonce} the
+ * id_token must carry. For SAML it is the ID of the AuthnRequest, which the response's
+ * {@code InResponseTo} must answer. Each cookie is single use: the callback clears it whether or not it
+ * matched.
+ */
+@Service
+public class SSOLoginState {
+
+    public static final String OAUTH_COOKIE = "SSO_OAUTH_STATE";
+    public static final String SAML_COOKIE = "SSO_SAML_REQUEST";
+
+    public record OAuthRequest(String state, String nonce) {}
+
+    private final SecureRandom random = new SecureRandom();
+    private final Duration ttl;
+
+    public SSOLoginState(@Value("${sso.login-state-ttl:10m}") Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    // ✅ Fresh state + nonce for an authorization request, remembered in this browser
+    public OAuthRequest startOAuth(HttpServletRequest request, HttpServletResponse response) {
+        OAuthRequest started = new OAuthRequest(randomToken(), randomToken());
+        // Lax: sent on the IdP's top-level redirect back to the callback
+        writeCookie(request, response, OAUTH_COOKIE, started.state() + "." + started.nonce(), ttl, "Lax");
+        return started;
+    }
+
+    // ✅ The nonce the id_token must carry, or null when this browser did not start a login with that state
+    public String finishOAuth(HttpServletRequest request, HttpServletResponse response, String state) {
+        String value = cookieValue(request, OAUTH_COOKIE);
+        if (value == null) return null;
+        writeCookie(request, response, OAUTH_COOKIE, "", Duration.ZERO, "Lax");
+
+        int dot = value.indexOf('.');
+        if (state == null || dot < 0) return null;
+        boolean matches = MessageDigest.isEqual(value.substring(0, dot).getBytes(StandardCharsets.US_ASCII),
+                state.getBytes(StandardCharsets.US_ASCII));
+        return matches ? value.substring(dot + 1) : null;
+    }
+
+    // ✅ Remember the ID of the AuthnRequest this browser is sent to the IdP with
+    public void startSaml(HttpServletRequest request, HttpServletResponse response, String requestId) {
+        writeCookie(request, response, SAML_COOKIE, requestId, ttl, samlSameSite(request));
+    }
+
+    // ✅ The AuthnRequest ID this browser's SAML login started with, or null
+    public String finishSaml(HttpServletRequest request, HttpServletResponse response) {
+        String requestId = cookieValue(request, SAML_COOKIE);
+        if (requestId != null) writeCookie(request, response, SAML_COOKIE, "", Duration.ZERO, samlSameSite(request));
+        return requestId;
+    }
+
+    // The IdP POSTs the response cross-site, which only SameSite=None cookies survive, and browsers require
+    // Secure for those; over plain HTTP (development) the attribute is left out (browser default)
+    private static String samlSameSite(HttpServletRequest request) {
+        return request.isSecure() ? "None" : null;
+    }
+
+    // 128 random bits, URL-safe
+    private String randomToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String cookieValue(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return null;
+        for (Cookie cookie : cookies) {
+            if (name.equals(cookie.getName()) && !cookie.getValue().isEmpty()) return cookie.getValue();
+        }
+        return null;
+    }
+
+    private static void writeCookie(HttpServletRequest request, HttpServletResponse response, String name,
+                                    String value, Duration maxAge, String sameSite) {
+        ResponseCookie cookie = ResponseCookie.from(name, value)
+                .path(request.getContextPath() + "/sso")
+                .maxAge(maxAge)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite(sameSite)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+}
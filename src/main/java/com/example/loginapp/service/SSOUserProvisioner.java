@@ -0,0 +1,127 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginIdentity;
+import com.example.loginapp.model.User;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Just-in-time provisioning for users arriving through an SSO callback (JWT, OAuth, SAML).
+ * <p>
+ * Known users come from {@link UserLookupCache} without touching the database. A first-time user is
+ * created — or, if a concurrent login got there first, found — by a single
+ * {@code INSERT ... ON CONFLICT (email_normalized) DO UPDATE ... RETURNING}: one round trip, and the
+ * unique index makes concurrent first logins for the same address (whatever its case) end up on one
+ * row. {@code xmax = 0} in {@code RETURNING} tells an inserted row from an existing one. The new account
+ * gets {@link UnusablePasswordEncoder#MARKER} instead of a hashed placeholder, so no BCrypt work is done
+ * and no password can ever match it.
+ * <p>
+ * Until {@link UserIdentityBackfill} has built that index the statement conflicts on the raw
+ * {@code email} instead; first logins that differ only in case may then create two accounts, which the
+ * backfill de-duplicates before building the index.
+ * <p>
+ * Logging in links to an existing account with the same email, the local admin's included, so that is
+ * only done for emails the IdP says it verified. SAML and JWT assertions come from the configured IdP and
+ * count as verified; OAuth logins pass the {@code email_verified} claim.
+ */
+@Service
+public class SSOUserProvisioner {
+
+    // username = email unless another account already uses that as its username; then email#id.
+    // The no-op DO UPDATE (DO NOTHING would return no row) locks and returns the existing account.
+    private static final String UPSERT = """
+            INSERT INTO users (id, username, email, password, name, role,
+                               username_normalized, email_normalized, created_at)
+            SELECT n.id,
+                   CASE WHEN taken.id IS NULL THEN :email ELSE :email || '#' || n.id END,
+                   :email, :password, :name, 'USER',
+                   CASE WHEN taken.id IS NULL THEN :emailNormalized ELSE :emailNormalized || '#' || n.id END,
+                   :emailNormalized, now()
+              FROM (SELECT nextval('users_seq') AS id) n
+              LEFT JOIN LATERAL (SELECT id FROM users
+                                  WHERE username = :email OR username_normalized = :emailNormalized
+                                  LIMIT 1) taken ON true
+            ON CONFLICT %s
+            RETURNING id, username, email, password, name, role, (xmax = 0) AS created
+            """;
+
+    private static final String UPSERT_BY_EMAIL_NORMALIZED = UPSERT.formatted(
+            "(email_normalized) DO UPDATE SET email_normalized = EXCLUDED.email_normalized");
+
+    // Before the unique index on email_normalized exists
+    private static final String UPSERT_BY_EMAIL = UPSERT.formatted(
+            "(email) DO UPDATE SET email = EXCLUDED.email");
+
+    private static final RowMapper<Provisioned> PROVISIONED_ROW = (rs, rowNum) -> {
+        User user = new User(rs.getString("username"), rs.getString("email"), rs.getString("password"),
+                rs.getString("name"), rs.getString("role"));
+        user.setId(rs.getLong("id"));
+        return new Provisioned(user, rs.getBoolean("created"));
+    };
+
+    private record Provisioned(User user, boolean created) {}
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final UserLookupCache userLookupCache;
+    private final UserIdentityBackfill identityBackfill;
+    private final UserCountCache userCountCache;
+
+    public SSOUserProvisioner(NamedParameterJdbcTemplate jdbcTemplate, UserLookupCache userLookupCache,
+                              UserIdentityBackfill identityBackfill, UserCountCache userCountCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userLookupCache = userLookupCache;
+        this.identityBackfill = identityBackfill;
+        this.userCountCache = userCountCache;
+    }
+
+    // ✅ Find or create the user for an IdP-verified email (username = email, or email#id if that is taken)
+    public User provision(String email, String name) {
+        return provision(email, name, true);
+    }
+
+    // ✅ Same, but an unverified email only ever gets a new account (UnverifiedEmailException otherwise)
+    public User provision(String email, String name, boolean emailVerified) {
+        String emailNormalized = LoginIdentity.normalize(email);
+        // The lookup also matches usernames: only an account whose email this is can be linked
+        Optional<User> known = userLookupCache.find(email)
+                .filter(found -> emailNormalized.equals(LoginIdentity.normalize(found.getEmail())));
+        if (known.isPresent()) return link(known.get(), email, emailVerified);
+
+        Provisioned provisioned = upsert(email.trim(), name);
+        return provisioned.created() ? provisioned.user() : link(provisioned.user(), email, emailVerified);
+    }
+
+    private static User link(User existing, String email, boolean emailVerified) {
+        if (!emailVerified) {
+            throw new UnverifiedEmailException("The identity provider has not verified " + email
+                    + ", which belongs to an existing account");
+        }
+        return existing;
+    }
+
+    private Provisioned upsert(String email, String name) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("email", email)
+                .addValue("emailNormalized", LoginIdentity.normalize(email))
+                .addValue("password", UnusablePasswordEncoder.MARKER)
+                .addValue("name", name == null || name.isBlank() ? "SSO User" : name.trim());
+        String sql = identityBackfill.isEmailUnique() ? UPSERT_BY_EMAIL_NORMALIZED : UPSERT_BY_EMAIL;
+
+        Provisioned provisioned;
+        try {
+            provisioned = jdbcTemplate.queryForObject(sql, params, PROVISIONED_ROW);
+        } catch (DuplicateKeyException e) {
+            // Another unique column (username, raw email) was claimed by a concurrent insert, which is
+            // committed now: the retry sees it and either links to it or picks email#id
+            provisioned = jdbcTemplate.queryForObject(sql, params, PROVISIONED_ROW);
+        }
+        userLookupCache.evict(email); // drop the cached "unknown user" for this identity
+        if (provisioned.created()) userCountCache.evict();
+        return provisioned;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginPrincipal;
+import com.example.loginapp.model.User;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.stereotype.Service;
+
+/**
+ * Signs in a user who was authenticated by an SSO callback (JWT, OAuth, SAML) rather than by form login.
+ * <p>
+ * The context holds a {@link LoginPrincipal} and is stored through the configured
+ * {@link SecurityContextRepository} (session or signed cookie), never by writing session attributes directly.
+ */
+@Service
+public class SignInService {
+
+    private final SecurityContextRepository securityContextRepository;
+
+    public SignInService(SecurityContextRepository securityContextRepository) {
+        this.securityContextRepository = securityContextRepository;
+    }
+
+    // ✅ Safe to call from an async callback thread: the thread's own SecurityContextHolder is left alone
+    public LoginPrincipal signIn(User user, HttpServletRequest request, HttpServletResponse response) {
+        LoginPrincipal principal = LoginPrincipal.of(user);
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(principal.toAuthentication());
+
+        // Session fixation: a pre-login session id must not stay valid for the signed-in user
+        if (request.getSession(false) != null) {
+            request.changeSessionId();
+        }
+        securityContextRepository.saveContext(context, request, response);
+        return principal;
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginPrincipal;
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.DirectDecrypter;
+import com.nimbusds.jose.crypto.DirectEncrypter;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.EncryptedJWT;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.SignedJWT;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps the authenticated user in a compact token cookie instead of the HTTP session, so any node can
+ * serve any request and nodes hold no per-user state (no sticky sessions behind the load balancer).
+ * <p>
+ * The cookie is an HS256-signed JWT, or with encryption on a {@code dir}/A256GCM JWE (authenticated
+ * encryption, so it is not signed separately). Both keys are derived from one shared secret, which must
+ * be the same on every node. The token carries the {@link LoginPrincipal} and expires after a fixed TTL;
+ * like any stateless token it can't be revoked early, and role changes apply from the next login.
+ */
+public class SignedCookieSecurityContextRepository implements SecurityContextRepository {
+
+    public enum Mode { SESSION, COOKIE }
+
+    private static final Logger log = LoggerFactory.getLogger(SignedCookieSecurityContextRepository.class);
+
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String NAME_CLAIM = "name";
+    private static final String ROLES_CLAIM = "roles";
+
+    private final SecurityContextHolderStrategy contextHolderStrategy = SecurityContextHolder.getContextHolderStrategy();
+
+    private final String cookieName;
+    private final Duration ttl;
+    private final boolean encrypt;
+
+    // Thread-safe and built once; only the per-request HMAC / AES-GCM work remains
+    private final MACSigner signer;
+    private final MACVerifier verifier;
+    private final DirectEncrypter encrypter;
+    private final DirectDecrypter decrypter;
+
+    public SignedCookieSecurityContextRepository(String cookieName, byte[] secret, Duration ttl, boolean encrypt) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("Security context cookie secret must be at least 256 bits");
+        }
+        this.cookieName = cookieName;
+        this.ttl = ttl;
+        this.encrypt = encrypt;
+        try {
+            this.signer = new MACSigner(deriveKey(secret, "signing"));
+            this.verifier = new MACVerifier(deriveKey(secret, "signing"));
+            this.encrypter = new DirectEncrypter(new SecretKeySpec(deriveKey(secret, "encryption"), "AES"));
+            this.decrypter = new DirectDecrypter(new SecretKeySpec(deriveKey(secret, "encryption"), "AES"));
+        } catch (JOSEException | GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise security context cookie keys", e);
+        }
+    }
+
+    @Override
+    public DeferredSecurityContext loadDeferredContext(HttpServletRequest request) {
+        // Parsed on first use only: requests for static resources never touch the token
+        return new DeferredSecurityContext() {
+            private SecurityContext context;
+            private boolean generated;
+
+            @Override
+            public SecurityContext get() {
+                if (context == null) {
+                    context = read(request);
+                    if (context == null) {
+                        context = contextHolderStrategy.createEmptyContext();
+                        generated = true;
+                    }
+                }
+                return context;
+            }
+
+            @Override
+            public boolean isGenerated() {
+                get();
+                return generated;
+            }
+        };
+    }
+
+    @Override
+    @Deprecated
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        return loadDeferredContext(requestResponseHolder.getRequest()).get();
+    }
+
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        Authentication authentication = context.getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            // Logout (or an emptied context): drop the cookie if the browser sent one
+            if (cookieValue(request) != null) {
+                writeCookie(request, response, "", Duration.ZERO);
+            }
+            return;
+        }
+        writeCookie(request, response, issue(authentication), ttl);
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return read(request) != null;
+    }
+
+    // ✅ Compact token for the authentication (the LoginPrincipal's fields, issued/expiry times)
+    public String issue(Authentication authentication) {
+        LoginPrincipal principal = principal(authentication);
+        Date now = new Date();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(principal.email())
+                .claim(USER_ID_CLAIM, principal.id())
+                .claim(NAME_CLAIM, principal.displayName())
+                .claim(ROLES_CLAIM, principal.roles())
+                .issueTime(now)
+                .expirationTime(new Date(now.getTime() + ttl.toMillis()))
+                .build();
+        try {
+            if (encrypt) {
+                EncryptedJWT jwt = new EncryptedJWT(new JWEHeader(JWEAlgorithm.DIR, EncryptionMethod.A256GCM), claims);
+                jwt.encrypt(encrypter);
+                return jwt.serialize();
+            }
+            SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+            jwt.sign(signer);
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Cannot issue security context cookie", e);
+        }
+    }
+
+    // ✅ Security context from a token, or null when it is missing, tampered with, of the wrong kind or expired
+    public SecurityContext parse(String token) {
+        try {
+            JWT jwt = JWTParser.parse(token);
+            if (encrypt && jwt instanceof EncryptedJWT encrypted) {
+                encrypted.decrypt(decrypter);
+            } else if (!encrypt && jwt instanceof SignedJWT signed
+                    && JWSAlgorithm.HS256.equals(signed.getHeader().getAlgorithm())) {
+                if (!signed.verify(verifier)) return null;
+            } else {
+                return null;
+            }
+
+            JWTClaimsSet claims = jwt.getJWTClaimsSet();
+            Date expires = claims.getExpirationTime();
+            if (expires == null || expires.getTime() <= System.currentTimeMillis() || claims.getSubject() == null) {
+                return null;
+            }
+
+            List<String> roles = claims.getStringListClaim(ROLES_CLAIM);
+            LoginPrincipal principal = new LoginPrincipal(claims.getLongClaim(USER_ID_CLAIM), claims.getSubject(),
+                    claims.getStringClaim(NAME_CLAIM), roles == null ? List.of() : roles);
+            SecurityContext context = contextHolderStrategy.createEmptyContext();
+            context.setAuthentication(principal.toAuthentication());
+            return context;
+        } catch (ParseException | JOSEException e) {
+            log.debug("Rejected security context cookie: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private SecurityContext read(HttpServletRequest request) {
+        String token = cookieValue(request);
+        return token == null || token.isEmpty() ? null : parse(token);
+    }
+
+    private String cookieValue(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return null;
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName())) return cookie.getValue();
+        }
+        return null;
+    }
+
+    private void writeCookie(HttpServletRequest request, HttpServletResponse response, String value, Duration maxAge) {
+        String path = request.getContextPath().isEmpty() ? "/" : request.getContextPath();
+        ResponseCookie cookie = ResponseCookie.from(cookieName, value)
+                .path(path)
+                .maxAge(maxAge)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private static LoginPrincipal principal(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof LoginPrincipal principal) return principal;
+        // Anything else (e.g. a plain UserDetails): name and roles only
+        List<String> roles = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        return new LoginPrincipal(null, authentication.getName(), null, roles);
+    }
+
+    // Separate signing and encryption keys from the one configured secret
+    private static byte[] deriveKey(byte[] secret, String purpose) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        return mac.doFinal(("security-context-cookie:" + purpose).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.loginapp.service;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Password "encoder" for accounts that must never sign in with a password (SSO and provisioned users).
+ * <p>
+ * Registered in the {@code DelegatingPasswordEncoder} under the {@code nologin} id, so a stored
+ * {@link #MARKER} is recognised and rejected immediately instead of being fed to BCrypt — and no CPU
+ * is spent hashing a throwaway placeholder when the account is created.
+ */
+public class UnusablePasswordEncoder implements PasswordEncoder {
+
+    public static final String ID = "nologin";
+
+    // ✅ Store this as the password of SSO-only accounts
+    public static final String MARKER = "{" + ID + "}";
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        throw new UnsupportedOperationException("Unusable passwords are stored as " + MARKER + ", never encoded");
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return false;
+    }
+}
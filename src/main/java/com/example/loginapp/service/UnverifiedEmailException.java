@@ -0,0 +1,12 @@
+package com.example.loginapp.service;
+
+/**
+ * An SSO login asserted the email of an existing account, but the IdP did not say it verified that email,
+ * so the login is not linked to the account.
+ */
+public class UnverifiedEmailException extends RuntimeException {
+
+    public UnverifiedEmailException(String message) {
+        super(message);
+    }
+}
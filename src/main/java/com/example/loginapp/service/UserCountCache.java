@@ -0,0 +1,41 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Total user count for the admin dashboard.
+ * <p>
+ * {@code SELECT count(*)} scans the whole {@code users} table, so every dashboard page used to pay for a
+ * full scan on top of its keyset page. The count is now taken at most once per {@code admin.users.count-ttl}
+ * per node (concurrent page loads share the one query). Whatever creates or deletes users on this node
+ * calls {@link #evict()}, so the next dashboard load recounts; changes made on other nodes show up
+ * within the TTL.
+ */
+@Service
+public class UserCountCache {
+
+    private final UserRepository userRepository;
+    private final Cache<Boolean, Long> count;
+
+    public UserCountCache(UserRepository userRepository,
+                          @Value("${admin.users.count-ttl:60s}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.count = Caffeine.newBuilder().maximumSize(1).expireAfterWrite(ttl).build();
+    }
+
+    // ✅ Number of users, at most count-ttl old
+    public long get() {
+        return count.get(Boolean.TRUE, key -> userRepository.count());
+    }
+
+    // ✅ Drop the cached count after users were created or deleted (recounted on the next dashboard load)
+    public void evict() {
+        count.invalidateAll();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.loginapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off migration for {@code users.id} moving from an IDENTITY column to the pooled {@code users_seq}.
+ * <p>
+ * On a database that already has users, Hibernate creates {@code users_seq} starting at 1, below
+ * the existing ids. This moves it past {@code MAX(id)} at startup, after the schema update and before
+ * the first insert. It only ever moves the sequence forward, so it is a no-op once aligned and safe when
+ * several nodes start together. (Postgres only; a new, empty database needs nothing.)
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class UserIdSequence implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIdSequence.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserIdSequence(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class);
+        if (maxId == null || maxId == 0) return;
+
+        Long lastValue = jdbcTemplate.queryForObject("SELECT last_value FROM users_seq", Long.class);
+        if (lastValue != null && lastValue >= maxId) return;
+
+        jdbcTemplate.queryForObject("SELECT setval('users_seq', GREATEST(last_value, ?)) FROM users_seq", Long.class, maxId);
+        log.info("Moved users_seq past existing user ids (max id {})", maxId);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.loginapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * One-off migration that fills {@code users.username_normalized} / {@code email_normalized} for rows
+ * created before those columns existed, then makes {@code email_normalized} unique.
+ * <p>
+ * Runs in small batches on a background thread after startup, so a large table never holds a long
+ * lock or delays the app. Until it finishes, {@link UserLookupCache} falls back to the legacy
+ * case-sensitive query when a normalized lookup misses. On a fully migrated table the first batch
+ * updates nothing and the fallback is switched off immediately.
+ * <p>
+ * Legacy accounts whose emails differ only in case are de-duplicated before the unique index is built:
+ * the oldest keeps the email for lookups, the others get {@code email_normalized || '#' || id} (they
+ * can still log in by username). On Postgres the index is built {@code CONCURRENTLY}; a build that
+ * failed (a duplicate raced in) leaves an invalid index, which the next startup drops and retries.
+ */
+@Service
+public class UserIdentityBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIdentityBackfill.class);
+
+    static final String EMAIL_INDEX = "ux_users_email_normalized";
+
+    private static final String BACKFILL_BATCH = """
+            UPDATE users
+               SET username_normalized = LOWER(TRIM(username)),
+                   email_normalized = LOWER(TRIM(email))
+             WHERE id IN (SELECT id FROM users
+                           WHERE username_normalized IS NULL OR email_normalized IS NULL
+                           LIMIT ?)
+            """;
+
+    private static final String DUPLICATE_EMAILS = """
+            SELECT u.id FROM users u
+             WHERE u.id > (SELECT MIN(d.id) FROM users d WHERE d.email_normalized = u.email_normalized)
+             ORDER BY u.id
+            """;
+
+    private static final String DEDUPLICATE_EMAILS = """
+            UPDATE users u
+               SET email_normalized = email_normalized || '#' || CAST(id AS VARCHAR(20))
+             WHERE u.id > (SELECT MIN(d.id) FROM users d WHERE d.email_normalized = u.email_normalized)
+            """;
+
+    // No row: the index does not exist yet; false: an earlier CONCURRENTLY build failed half-way
+    private static final String PG_INDEX_VALID =
+            "SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass('" + EMAIL_INDEX + "')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    private volatile boolean complete;
+    private volatile boolean emailUnique;
+
+    public UserIdentityBackfill(JdbcTemplate jdbcTemplate,
+                                @Value("${users.identity.backfill-batch-size:5000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    // ✅ True once every row has its normalized lookup columns
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // ✅ True once email_normalized has its unique index (ON CONFLICT (email_normalized) can be used)
+    public boolean isEmailUnique() {
+        return emailUnique;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::run, "user-identity-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        long total = 0;
+        try {
+            int updated;
+            do {
+                updated = jdbcTemplate.update(BACKFILL_BATCH, batchSize);
+                total += updated;
+                if (updated > 0) log.info("Backfilled normalized identities for {} users so far", total);
+            } while (updated > 0);
+            complete = true;
+            if (total > 0) log.info("Normalized identity backfill finished ({} users)", total);
+        } catch (DataAccessException e) {
+            // Lookups keep using the legacy fallback; the next restart resumes where this stopped
+            log.warn("Normalized identity backfill stopped after {} users", total, e);
+            return;
+        }
+
+        try {
+            deduplicateEmails();
+            createEmailIndex();
+            emailUnique = true;
+        } catch (DataAccessException e) {
+            // SSO provisioning keeps using ON CONFLICT (email); the next restart retries
+            log.warn("Could not create the unique index on users.email_normalized", e);
+        }
+    }
+
+    private void deduplicateEmails() {
+        List<Long> duplicates = jdbcTemplate.queryForList(DUPLICATE_EMAILS, Long.class);
+        if (duplicates.isEmpty()) return;
+        jdbcTemplate.update(DEDUPLICATE_EMAILS);
+        log.warn("{} users share their email with an older account and can only log in by username now: ids {}",
+                duplicates.size(), duplicates);
+    }
+
+    private void createEmailIndex() {
+        boolean postgres = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())));
+        if (!postgres) {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + EMAIL_INDEX + " ON users (email_normalized)");
+            jdbcTemplate.execute("DROP INDEX IF EXISTS ix_users_email_normalized");
+            return;
+        }
+
+        // CONCURRENTLY: logins and registrations keep writing to users while the index is built
+        List<Boolean> valid = jdbcTemplate.queryForList(PG_INDEX_VALID, Boolean.class);
+        if (valid.contains(Boolean.TRUE)) return;
+        if (!valid.isEmpty()) jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + EMAIL_INDEX);
+        jdbcTemplate.execute("CREATE UNIQUE INDEX CONCURRENTLY " + EMAIL_INDEX + " ON users (email_normalized)");
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS ix_users_email_normalized");
+        log.info("Created unique index {}", EMAIL_INDEX);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginIdentity;
+import com.example.loginapp.model.User;
+import com.example.loginapp.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size- and TTL-bounded cache of users by login identity (username or email).
+ * <p>
+ * Every authentication attempt — including the failed ones that dominate during credential stuffing —
+ * used to run the {@code username = ? OR email = ?} query. Identities are now normalized and
+ * classified up front ({@link LoginIdentity}), loaded with a single indexed lookup, and cached:
+ * found users under both their username and email, unknown identities as a miss for a shorter TTL
+ * so repeated guesses do not reach Postgres either.
+ * <p>
+ * Anything that changes a user must call {@link #evict(User)} (or {@link #evict(String...)} with the
+ * identities it touched) after saving. The TTL bounds staleness for changes made on other nodes.
+ * Evicted identities are also reloaded from the primary for a while ({@link ReadYourWrites}), so a
+ * login right after registering never misses on a read replica that has not caught up yet.
+ */
+@Service
+public class UserLookupCache {
+
+    private final UserRepository userRepository;
+    private final UserIdentityBackfill identityBackfill;
+    private final ReadYourWrites readYourWrites;
+    private final Cache<String, Optional<CachedUser>> cache;
+    // Bumped by every evict, so a load that raced one does not index its result under other keys
+    private final AtomicLong evictions = new AtomicLong();
+
+    public UserLookupCache(UserRepository userRepository,
+                           UserIdentityBackfill identityBackfill,
+                           ReadYourWrites readYourWrites,
+                           MeterRegistry meterRegistry,
+                           @Value("${users.cache.max-size:100000}") long maxSize,
+                           @Value("${users.cache.ttl:60s}") Duration ttl,
+                           @Value("${users.cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.userRepository = userRepository;
+        this.identityBackfill = identityBackfill;
+        this.readYourWrites = readYourWrites;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfter(new TtlExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                        .recordStats()
+                        .<String, Optional<CachedUser>>build(),
+                "users.lookup");
+    }
+
+    // ✅ Find by username OR email; returns a detached copy the caller may modify
+    public Optional<User> find(String usernameOrEmail) {
+        if (usernameOrEmail == null) return Optional.empty();
+        LoginIdentity identity = LoginIdentity.of(usernameOrEmail);
+
+        Optional<CachedUser> cached = cache.getIfPresent(identity.value());
+        if (cached == null) {
+            String input = usernameOrEmail.trim();
+            long generation = evictions.get();
+            // Atomic per key: an evict of this identity waits for the load and then removes its result
+            cached = cache.get(identity.value(),
+                    key -> readYourWrites.read(key, () -> load(identity, input)).map(CachedUser::of));
+            cached.ifPresent(user -> indexOtherIdentities(identity.value(), user, generation));
+        }
+        return cached.map(CachedUser::toUser);
+    }
+
+    // Index a found user under its other identity too, unless an evict ran meanwhile (the row may be stale)
+    private void indexOtherIdentities(String loadedKey, CachedUser user, long generation) {
+        List<String> keys = new ArrayList<>(2);
+        for (String identity : new String[]{user.username(), user.email()}) {
+            String key = identity == null ? null : key(identity);
+            if (key != null && !key.equals(loadedKey) && cache.asMap().putIfAbsent(key, Optional.of(user)) == null) {
+                keys.add(key);
+            }
+        }
+        // An evict that started after the check above removes the entries itself; one before it, we undo here
+        if (evictions.get() != generation) cache.invalidateAll(keys);
+    }
+
+    private Optional<User> load(LoginIdentity identity, String input) {
+        Optional<User> user = identity.email()
+                ? userRepository.findFirstByEmailNormalizedOrderByIdAsc(identity.value())
+                        // Rare: usernames that contain '@' (e.g. SSO accounts) — only costs a second lookup on a miss
+                        .or(() -> userRepository.findFirstByUsernameNormalizedOrderByIdAsc(identity.value()))
+                : userRepository.findFirstByUsernameNormalizedOrderByIdAsc(identity.value());
+
+        if (user.isEmpty() && !identityBackfill.isComplete()) {
+            // Rows not backfilled yet have no normalized columns
+            user = userRepository.findByUsernameOrEmail(input, input);
+        }
+        return user;
+    }
+
+    // ✅ Drop a user's entries after it was created, changed or deleted
+    public void evict(User user) {
+        if (user == null) return;
+        evict(user.getUsername(), user.getEmail());
+    }
+
+    // ✅ Drop the entries (including cached misses) for the given identities
+    public void evict(String... identities) {
+        List<String> keys = new ArrayList<>(identities.length);
+        for (String identity : identities) {
+            if (identity != null) keys.add(key(identity));
+        }
+        keys.forEach(readYourWrites::wrote);
+        evictions.incrementAndGet();
+        cache.invalidateAll(keys);
+    }
+
+    public void evictAll() {
+        evictions.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    static String key(String identity) {
+        return LoginIdentity.normalize(identity);
+    }
+
+    /**
+     * Immutable copy of the {@code users} row, so cached entries are never shared with
+     * (or dirtied through) a persistence context.
+     */
+    record CachedUser(Long id, String username, String email, String password, String name, String role) {
+
+        static CachedUser of(User user) {
+            return new CachedUser(user.getId(), user.getUsername(), user.getEmail(),
+                    user.getPassword(), user.getName(), user.getRole());
+        }
+
+        User toUser() {
+            User user = new User(username, email, password, name, role);
+            user.setId(id);
+            return user;
+        }
+
+        @Override
+        public String toString() {
+            // Never leak password hashes into logs
+            return "CachedUser[id=" + id + ", username=" + username + "]";
+        }
+    }
+
+    // Known users live for the full TTL, cached misses for the (shorter) negative TTL
+    private record TtlExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<String, Optional<CachedUser>> {
+
+        @Override
+        public long expireAfterCreate(String key, Optional<CachedUser> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<CachedUser> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<CachedUser> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
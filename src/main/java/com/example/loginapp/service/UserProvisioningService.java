@@ -0,0 +1,366 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginIdentity;
+import com.example.loginapp.model.User;
+import com.example.loginapp.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk joiner/leaver provisioning (SCIM-style) for the nightly HR feed.
+ * <p>
+ * The request body — a JSON array or NDJSON stream of user objects — is parsed one object at a
+ * time, so it is never held in memory whole. Users are applied in batches of
+ * {@code users.provisioning.batch-size}: one transaction, two lookups for the existing users of the
+ * whole batch, then a single flush that Hibernate sends as JDBC batches (ids come from the pooled
+ * {@code users_seq}, so inserts batch too). A result line is streamed back per user as each batch
+ * commits, followed by a summary with the throughput in users per second.
+ * <p>
+ * Items are matched by email first, then username (both case-insensitive). {@code "op": "delete"}
+ * or {@code "active": false} removes the user. Updates change only the fields present in the item
+ * (email is always required). Provisioned users get an unusable password and sign in through SSO.
+ */
+@Service
+public class UserProvisioningService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserProvisioningService.class);
+
+    public enum Status {CREATED, UPDATED, DELETED, NOT_FOUND, FAILED}
+
+    public record Summary(long created, long updated, long deleted, long notFound, long failed, long elapsedMillis) {
+
+        public long total() {
+            return created + updated + deleted + notFound + failed;
+        }
+
+        public double usersPerSecond() {
+            return elapsedMillis == 0 ? total() : total() * 1000.0 / elapsedMillis;
+        }
+    }
+
+    record Item(int index, boolean delete, String username, String email, String name, String role) {
+    }
+
+    record Outcome(Item item, Status status, Long id, String error) {
+    }
+
+    private final UserRepository userRepository;
+    private final UserLookupCache userLookupCache;
+    private final UserCountCache userCountCache;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    private final Timer batchTimer;
+    private final Map<Status, Counter> itemCounters = new EnumMap<>(Status.class);
+
+    public UserProvisioningService(UserRepository userRepository,
+                                   UserLookupCache userLookupCache,
+                                   UserCountCache userCountCache,
+                                   EntityManager entityManager,
+                                   PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${users.provisioning.batch-size:500}") int batchSize) {
+        this.userRepository = userRepository;
+        this.userLookupCache = userLookupCache;
+        this.userCountCache = userCountCache;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+
+        this.batchTimer = Timer.builder("users.provisioning.batch")
+                .description("Time to apply and commit one provisioning batch")
+                .register(meterRegistry);
+        for (Status status : Status.values()) {
+            itemCounters.put(status, Counter.builder("users.provisioning.items")
+                    .tag("status", status.name().toLowerCase(Locale.ROOT))
+                    .description("Users processed by bulk provisioning")
+                    .register(meterRegistry));
+        }
+    }
+
+    // ✅ Apply every user in the body, writing one NDJSON result line per user and a final summary line
+    public Summary provision(InputStream body, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        Map<Status, Long> counts = new EnumMap<>(Status.class);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body);
+             JsonGenerator results = objectMapper.getFactory().createGenerator(out)) {
+            results.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            results.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+
+            List<Item> batch = new ArrayList<>(batchSize);
+            try {
+                // Either one JSON array of users, or NDJSON (a sequence of top-level objects)
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) token = parser.nextToken();
+
+                int index = 0;
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new IllegalArgumentException("Expected a user object at item " + index);
+                    }
+                    batch.add(readItem(index++, objectMapper.readTree(parser)));
+                    if (batch.size() == batchSize) {
+                        apply(batch, results, counts);
+                        batch.clear();
+                    }
+                    token = parser.nextToken();
+                }
+                if (!batch.isEmpty()) apply(batch, results, counts);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                // Earlier batches are committed; report where the feed broke and stop
+                results.writeStartObject();
+                results.writeStringField("error", "Malformed request body: " + e.getMessage());
+                results.writeEndObject();
+            }
+
+            Summary summary = new Summary(
+                    counts.getOrDefault(Status.CREATED, 0L), counts.getOrDefault(Status.UPDATED, 0L),
+                    counts.getOrDefault(Status.DELETED, 0L), counts.getOrDefault(Status.NOT_FOUND, 0L),
+                    counts.getOrDefault(Status.FAILED, 0L), (System.nanoTime() - started) / 1_000_000);
+            writeSummary(results, summary);
+            log.info("Bulk provisioning: {} users in {} ms ({} users/s)",
+                    summary.total(), summary.elapsedMillis(), Math.round(summary.usersPerSecond()));
+            return summary;
+        }
+    }
+
+    // Accepts plain fields or the SCIM shapes (userName, emails[].value, name.formatted / givenName + familyName)
+    private static Item readItem(int index, JsonNode node) {
+        String username = text(node, "userName", "username");
+        String email = text(node, "email");
+        JsonNode emails = node.get("emails");
+        if (email == null && emails != null && emails.isArray() && !emails.isEmpty()) {
+            email = text(emails.get(0), "value");
+        }
+
+        String name;
+        JsonNode nameNode = node.get("name");
+        if (nameNode != null && nameNode.isObject()) {
+            name = text(nameNode, "formatted");
+            if (name == null) {
+                String given = text(nameNode, "givenName");
+                String family = text(nameNode, "familyName");
+                name = ((given == null ? "" : given) + " " + (family == null ? "" : family)).trim();
+            }
+        } else {
+            name = text(node, "name", "displayName");
+        }
+
+        boolean delete = "delete".equalsIgnoreCase(text(node, "op"))
+                || (node.has("active") && !node.get("active").asBoolean(true));
+        return new Item(index, delete, username, email, name, text(node, "role"));
+    }
+
+    private static String text(JsonNode node, String... fields) {
+        for (String field : fields) {
+            JsonNode value = node.get(field);
+            if (value != null && value.isTextual() && !value.asText().isBlank()) return value.asText().trim();
+        }
+        return null;
+    }
+
+    private void apply(List<Item> batch, JsonGenerator results, Map<Status, Long> counts) throws IOException {
+        List<String> touched = new ArrayList<>();
+        List<Outcome> outcomes;
+        Timer.Sample sample = Timer.start();
+        try {
+            outcomes = transactionTemplate.execute(status -> applyInTransaction(batch, touched));
+        } catch (RuntimeException e) {
+            // Typically a unique-key clash with a concurrent writer: the whole batch was rolled back
+            log.warn("Provisioning batch starting at item {} rolled back", batch.get(0).index(), e);
+            String error = "Batch rolled back: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            outcomes = batch.stream().map(item -> new Outcome(item, Status.FAILED, null, error)).toList();
+        } finally {
+            // Keep the (possibly request-scoped) persistence context from growing across batches
+            entityManager.clear();
+            sample.stop(batchTimer);
+        }
+        userLookupCache.evict(touched.toArray(String[]::new));
+        if (outcomes.stream().anyMatch(o -> o.status() == Status.CREATED || o.status() == Status.DELETED)) {
+            userCountCache.evict();
+        }
+
+        for (Outcome outcome : outcomes) {
+            writeOutcome(results, outcome);
+            counts.merge(outcome.status(), 1L, Long::sum);
+            itemCounters.get(outcome.status()).increment();
+        }
+        results.flush(); // let the caller see progress batch by batch
+    }
+
+    private List<Outcome> applyInTransaction(List<Item> batch, List<String> touched) {
+        Set<String> emails = new HashSet<>();
+        Set<String> usernames = new HashSet<>();
+        for (Item item : batch) {
+            if (item.email() != null) emails.add(LoginIdentity.normalize(item.email()));
+            if (item.username() != null) usernames.add(LoginIdentity.normalize(item.username()));
+        }
+
+        // Existing users for the whole batch in two indexed IN queries
+        Map<String, User> byEmail = new HashMap<>();
+        Map<String, User> byUsername = new HashMap<>();
+        for (User user : userRepository.findByEmailNormalizedIn(emails)) index(user, byEmail, byUsername);
+        for (User user : userRepository.findByUsernameNormalizedIn(usernames)) index(user, byEmail, byUsername);
+
+        Set<String> freed = new HashSet<>();
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        for (Item item : batch) {
+            String email = LoginIdentity.normalize(item.email());
+            String username = LoginIdentity.normalize(item.username());
+
+            User existing = email == null ? null : byEmail.get(email);
+            if (existing == null && username != null) existing = byUsername.get(username);
+
+            if (item.delete()) {
+                if (existing == null) {
+                    outcomes.add(new Outcome(item, Status.NOT_FOUND, null, null));
+                    continue;
+                }
+                touched.add(existing.getUsername());
+                touched.add(existing.getEmail());
+                unindex(existing, byEmail, byUsername);
+                freed.add(existing.getEmailNormalized());
+                freed.add(existing.getUsernameNormalized());
+                userRepository.delete(existing);
+                outcomes.add(new Outcome(item, Status.DELETED, existing.getId(), null));
+                continue;
+            }
+
+            if (email == null) {
+                outcomes.add(new Outcome(item, Status.FAILED, null, "email is required"));
+                continue;
+            }
+            // No username in the feed: an existing user keeps theirs, a new one logs in with the email
+            if (username == null) username = existing != null ? LoginIdentity.normalize(existing.getUsername()) : email;
+
+            User emailOwner = byEmail.get(email);
+            User usernameOwner = byUsername.get(username);
+            if (emailOwner != null && emailOwner != existing) {
+                outcomes.add(new Outcome(item, Status.FAILED, null, "email belongs to another user"));
+                continue;
+            }
+            if (usernameOwner != null && usernameOwner != existing) {
+                outcomes.add(new Outcome(item, Status.FAILED, null, "username belongs to another user"));
+                continue;
+            }
+
+            // Hibernate runs deletes after inserts/updates; reusing an identity freed in this batch needs them first
+            if (freed.contains(email) || freed.contains(username)) {
+                userRepository.flush();
+                freed.clear();
+            }
+
+            boolean hasName = item.name() != null && !item.name().isBlank();
+            String role = normalizeRole(item.role());
+
+            if (existing == null) {
+                String userName = item.username() != null ? item.username() : item.email();
+                String name = hasName ? item.name() : userName;
+                User user = new User(userName, item.email(), UnusablePasswordEncoder.MARKER, name, role);
+                userRepository.save(user); // persist only; the INSERT is batched at flush
+                index(user, byEmail, byUsername);
+                touched.add(userName);
+                touched.add(item.email());
+                outcomes.add(new Outcome(item, Status.CREATED, user.getId(), null));
+            } else {
+                touched.add(existing.getUsername());
+                touched.add(existing.getEmail());
+                unindex(existing, byEmail, byUsername);
+                // Only fields present in the item change; a row with just an email renames nothing
+                if (item.username() != null) existing.setUsername(item.username());
+                existing.setEmail(item.email());
+                if (hasName) existing.setName(item.name());
+                if (item.role() != null) existing.setRole(role);
+                index(existing, byEmail, byUsername, username, email);
+                touched.add(existing.getUsername());
+                touched.add(item.email());
+                outcomes.add(new Outcome(item, Status.UPDATED, existing.getId(), null));
+            }
+        }
+
+        userRepository.flush();
+        return outcomes;
+    }
+
+    private static String normalizeRole(String role) {
+        if (role == null || role.isBlank()) return "USER";
+        String upper = role.trim().toUpperCase(Locale.ROOT);
+        return upper.startsWith("ROLE_") ? upper.substring("ROLE_".length()) : upper;
+    }
+
+    private static void index(User user, Map<String, User> byEmail, Map<String, User> byUsername) {
+        index(user, byEmail, byUsername,
+                LoginIdentity.normalize(user.getUsername()), LoginIdentity.normalize(user.getEmail()));
+    }
+
+    private static void index(User user, Map<String, User> byEmail, Map<String, User> byUsername,
+                              String username, String email) {
+        if (email != null) byEmail.putIfAbsent(email, user);
+        if (username != null) byUsername.putIfAbsent(username, user);
+    }
+
+    private static void unindex(User user, Map<String, User> byEmail, Map<String, User> byUsername) {
+        byEmail.remove(LoginIdentity.normalize(user.getEmail()), user);
+        byUsername.remove(LoginIdentity.normalize(user.getUsername()), user);
+    }
+
+    private static void writeOutcome(JsonGenerator results, Outcome outcome) throws IOException {
+        results.writeStartObject();
+        results.writeNumberField("index", outcome.item().index());
+        results.writeStringField("status", outcome.status().name().toLowerCase(Locale.ROOT));
+        if (outcome.id() != null) results.writeNumberField("id", outcome.id());
+        if (outcome.item().username() != null) results.writeStringField("userName", outcome.item().username());
+        if (outcome.item().email() != null) results.writeStringField("email", outcome.item().email());
+        if (outcome.error() != null) results.writeStringField("error", outcome.error());
+        results.writeEndObject();
+    }
+
+    private static void writeSummary(JsonGenerator results, Summary summary) throws IOException {
+        results.writeStartObject();
+        results.writeObjectFieldStart("summary");
+        results.writeNumberField("created", summary.created());
+        results.writeNumberField("updated", summary.updated());
+        results.writeNumberField("deleted", summary.deleted());
+        results.writeNumberField("notFound", summary.notFound());
+        results.writeNumberField("failed", summary.failed());
+        results.writeNumberField("elapsedMs", summary.elapsedMillis());
+        results.writeNumberField("usersPerSecond", Math.round(summary.usersPerSecond()));
+        results.writeEndObject();
+        results.writeEndObject();
+        results.writeRaw('\n');
+    }
+}
@@ -52,12 +52,20 @@
 
 package com.example.loginapp.service;
 
+import com.example.loginapp.model.LoginIdentity;
 import com.example.loginapp.model.User;
+import com.example.loginapp.model.UserPage;
+import com.example.loginapp.model.UserSummary;
 import com.example.loginapp.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 @Service
@@ -69,18 +77,35 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
-    // ✅ Find user by username OR email
+    @Autowired
+    private UserLookupCache userLookupCache;
+
+    @Autowired
+    private UserCountCache userCountCache;
+
+    @Autowired
+    private SSOUserProvisioner ssoUserProvisioner;
+
+    @Autowired
+    private LoginMetrics loginMetrics;
+
+    // ✅ Find user by username OR email (served from the lookup cache when possible)
     public Optional<User> findByUsernameOrEmail(String usernameOrEmail) {
-        return userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail);
+        return userLookupCache.find(usernameOrEmail);
     }
 
-    // ✅ Save user (with bcrypt password encoding)
+    // ✅ Save user (with bcrypt password encoding); the registration path, timed per phase
     public void saveUser(User user) {
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        String rawPassword = user.getPassword();
+        user.setPassword(loginMetrics.time(LoginMetrics.Flow.REGISTER, LoginMetrics.Phase.BCRYPT,
+                () -> passwordEncoder.encode(rawPassword)));
         if (user.getRole() == null || user.getRole().isBlank()) {
             user.setRole("USER"); // default
         }
-        userRepository.save(user);
+        loginMetrics.time(LoginMetrics.Flow.REGISTER, LoginMetrics.Phase.PROVISIONING,
+                () -> userRepository.save(user));
+        userLookupCache.evict(user);
+        userCountCache.evict();
     }
 
     // ✅ Compare raw password with encoded password
@@ -88,24 +113,48 @@ public class UserService {
         return passwordEncoder.matches(rawPassword, encodedPassword);
     }
 
-    // ✅ Auto-register user for SSO login
+    // ✅ Auto-register user for SSO login (single upsert, no usable password)
     public User autoRegisterSSOUser(String email, String name) {
-        Optional<User> existingUser = userRepository.findByUsernameOrEmail(email, email);
-        if (existingUser.isPresent()) {
-            return existingUser.get();
+        return ssoUserProvisioner.provision(email, name);
+    }
+
+    // ✅ One page of the admin user listing (keyset on id; filters are case-insensitive prefixes, role exact)
+    public UserPage listUsers(String username, String email, String role, Long after, Long before, int pageSize) {
+        String usernamePrefix = prefixPattern(username);
+        String emailPrefix = prefixPattern(email);
+        String roleFilter = role == null || role.isBlank() ? null : role.trim().toUpperCase(Locale.ROOT);
+        Limit limit = Limit.of(pageSize + 1); // one extra row tells us whether there is another page
+
+        if (before != null) {
+            List<UserSummary> rows = new ArrayList<>(
+                    userRepository.findSummariesBefore(before, usernamePrefix, emailPrefix, roleFilter, limit));
+            boolean hasPrevious = rows.size() > pageSize;
+            if (hasPrevious) rows.remove(pageSize);
+            Collections.reverse(rows);
+            return new UserPage(rows, hasPrevious, true);
         }
 
-        // Default password for SSO users
-        String defaultPassword = passwordEncoder.encode("defaultPassword123");
-        User newUser = new User(email, email, defaultPassword, name, "USER");
-        return userRepository.save(newUser);
+        List<UserSummary> rows = new ArrayList<>(
+                userRepository.findSummariesAfter(after == null ? 0 : after, usernamePrefix, emailPrefix, roleFilter, limit));
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) rows.remove(pageSize);
+        return new UserPage(rows, after != null && after > 0, hasNext);
+    }
+
+    private static String prefixPattern(String filter) {
+        if (filter == null || filter.isBlank()) return null;
+        String escaped = LoginIdentity.normalize(filter)
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return escaped + "%";
     }
 
     // ✅ Create admin manually (you can call this from CommandLineRunner or a controller)
     public void createAdminUser(String username, String email, String password, String name) {
-        if (userRepository.findByUsernameOrEmail(username, email).isEmpty()) {
+        if (ReplicaRouting.onPrimary(() -> userRepository.findByUsernameOrEmail(username, email)).isEmpty()) {
             User admin = new User(username, email, passwordEncoder.encode(password), name, "ADMIN");
             userRepository.save(admin);
+            userLookupCache.evict(admin);
+            userCountCache.evict();
         }
     }
 }
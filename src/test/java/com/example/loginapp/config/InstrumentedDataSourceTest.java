@@ -0,0 +1,137 @@
+package com.example.loginapp.config;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.example.loginapp.service.QueryStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs statements through {@link InstrumentedDataSource} over fake JDBC objects (the driver side does nothing)
+ * and checks what reaches {@link QueryStatistics}. The slow threshold is 0, so every statement is logged.
+ */
+class InstrumentedDataSourceTest {
+
+    private final QueryStatistics statistics = new QueryStatistics(new SimpleMeterRegistry(), Duration.ZERO, 100);
+    private final InstrumentedDataSource dataSource = new InstrumentedDataSource(fakeDataSource(), statistics);
+
+    private final Logger statisticsLog = (Logger) LoggerFactory.getLogger(QueryStatistics.class);
+    private final ListAppender<ILoggingEvent> slowLog = new ListAppender<>();
+
+    @BeforeEach
+    void captureSlowLog() {
+        slowLog.start();
+        statisticsLog.addAppender(slowLog);
+    }
+
+    @AfterEach
+    void releaseSlowLog() {
+        statisticsLog.detachAppender(slowLog);
+    }
+
+    @Test
+    void logsSqlWithBindTypes() throws Exception {
+        String sql = "select * from users where username = ? and id = ? and email = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, "jane");
+            statement.setLong(2, 42L);
+            statement.setNull(3, Types.VARCHAR);
+            statement.executeQuery();
+        }
+
+        assertThat(slowLog.list).hasSize(1);
+        String line = slowLog.list.get(0).getFormattedMessage();
+        assertThat(line).startsWith("Slow query time_ms=")
+                .contains("params=[String, Long, null]")
+                .endsWith("sql=" + sql);
+        assertThat(statistics.slowest(1).get(0).slowestParameters()).isEqualTo("[String, Long, null]");
+    }
+
+    @Test
+    void describesBatchesAndResetsAfterExecuteBatch() throws Exception {
+        String sql = "update users set role = ? where id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (long id = 1; id <= 3; id++) {
+                statement.setString(1, "ADMIN");
+                statement.setLong(2, id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+
+            statement.setString(1, "USER");
+            statement.setLong(2, 4L);
+            statement.executeUpdate();
+        }
+
+        assertThat(slowLog.list).extracting(ILoggingEvent::getFormattedMessage)
+                .satisfiesExactly(
+                        batch -> assertThat(batch).contains("params=3 x [String, Long]"),
+                        single -> assertThat(single).contains("params=[String, Long]")
+                                .doesNotContain(" x "));
+    }
+
+    @Test
+    void recordsPlainStatementsBySqlText() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("select 1");
+            statement.execute("select 2");
+        }
+
+        assertThat(statistics.slowest(10)).extracting(QueryStatistics.Summary::sql)
+                .containsExactlyInAnyOrder("select 1", "select 2");
+    }
+
+    @Test
+    void exposesTheTargetConnection() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(connection).isInstanceOf(ConnectionProxy.class);
+            assertThat(((ConnectionProxy) connection).getTargetConnection()).isNotSameAs(connection);
+        }
+    }
+
+    // A DataSource whose connections and statements accept every call and return defaults
+    private static DataSource fakeDataSource() {
+        return fake(DataSource.class, method -> switch (method) {
+            case "getConnection" -> fake(Connection.class, connectionMethod -> switch (connectionMethod) {
+                case "prepareStatement", "prepareCall" -> fake(PreparedStatement.class, name -> null);
+                case "createStatement" -> fake(Statement.class, name -> null);
+                default -> null;
+            });
+            default -> null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> type, Function<String, Object> answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object result = answer.apply(method.getName());
+            if (result != null) return result;
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) return false;
+            if (returnType == int.class) return 0;
+            if (returnType == long.class) return 0L;
+            if (returnType == int[].class) return new int[0];
+            if (returnType == long[].class) return new long[0];
+            return null;
+        });
+    }
+}
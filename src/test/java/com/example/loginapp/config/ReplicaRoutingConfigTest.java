@@ -0,0 +1,135 @@
+package com.example.loginapp.config;
+
+import com.example.loginapp.model.User;
+import com.example.loginapp.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The MVC write paths with a read replica configured: two in-memory H2 databases stand in for the primary and
+ * the replica, and the replica is a copy of the primary taken before each test. Each request reads before it
+ * writes (registration and the SSO settings through read-only transactions, i.e. from the replica); the write
+ * must still reach the primary and leave the replica untouched.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "db.replica.url=" + ReplicaRoutingConfigTest.REPLICA_URL,
+        "db.replica.username=sa",
+        "db.replica.password=",
+        "db.replica.lag-query=SELECT lag_seconds FROM replica_lag",
+        // Checked by the test itself, once the replica has been filled
+        "db.replica.lag-check-interval-ms=3600000",
+        // Route the reads under test to the replica even right after a write
+        "db.replica.read-your-writes-window=0s"})
+@AutoConfigureMockMvc
+class ReplicaRoutingConfigTest {
+
+    static final String REPLICA_URL =
+            "jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+
+    private static final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate primary;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @BeforeEach
+    void copyPrimaryToReplica() {
+        replica.execute("DROP ALL OBJECTS");
+        for (String statement : primary.queryForList("SCRIPT", String.class)) {
+            replica.execute(statement);
+        }
+        replica.execute("CREATE TABLE replica_lag (lag_seconds DOUBLE PRECISION)");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+
+        replicaLagMonitor.check();
+        assertThat(replicaLagMonitor.isUsable()).isTrue();
+    }
+
+    @AfterAll
+    static void shutdownReplica() {
+        replica.execute("SHUTDOWN");
+    }
+
+    @Test
+    void registrationIsWrittenToThePrimary() throws Exception {
+        mockMvc.perform(post("/register")
+                        .param("username", "newcomer")
+                        .param("email", "newcomer@example.com")
+                        .param("password", "correct horse battery staple")
+                        .param("name", "New Comer"))
+                .andExpect(status().isOk());
+
+        assertThat(countUsers(primary, "newcomer")).isEqualTo(1);
+        assertThat(countUsers(replica, "newcomer")).isZero();
+    }
+
+    @Test
+    void ssoSettingsAreWrittenToThePrimary() throws Exception {
+        mockMvc.perform(post("/admin/update-sso")
+                        .with(user("admin").roles("ADMIN"))
+                        .param("oauthEnabled", "true")
+                        .param("oauthClientId", "routing-test"))
+                .andExpect(status().is3xxRedirection());
+
+        assertThat(countSsoConfigs(primary)).isEqualTo(1);
+        assertThat(countSsoConfigs(replica)).isZero();
+    }
+
+    @Test
+    void adminEditIsWrittenToThePrimary() throws Exception {
+        User user = new User();
+        user.setUsername("editme");
+        user.setEmail("editme@example.com");
+        user.setPassword("unused");
+        user.setName("Before");
+        user.setRole("USER");
+        long id = userRepository.save(user).getId();
+        copyPrimaryToReplica();
+
+        mockMvc.perform(post("/admin/update/" + id)
+                        .with(user("admin").roles("ADMIN"))
+                        .param("name", "After")
+                        .param("email", "edited@example.com"))
+                .andExpect(status().is3xxRedirection());
+
+        assertThat(nameOf(primary, id)).isEqualTo("After");
+        assertThat(nameOf(replica, id)).isEqualTo("Before");
+    }
+
+    private static int countUsers(JdbcTemplate jdbc, String username) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE username = ?", Integer.class, username);
+    }
+
+    private static int countSsoConfigs(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM ssoconfig", Integer.class);
+    }
+
+    private static String nameOf(JdbcTemplate jdbc, long id) {
+        return jdbc.queryForObject("SELECT name FROM users WHERE id = ?", String.class, id);
+    }
+}
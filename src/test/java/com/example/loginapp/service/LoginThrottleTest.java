@@ -0,0 +1,91 @@
+package com.example.loginapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginThrottleTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    // 3 at once, then one every 10 s (6 per minute)
+    private final LoginThrottle.Limit limit = LoginThrottle.Limit.of(3, 6);
+    private final AtomicLong bucket = new AtomicLong(Long.MIN_VALUE);
+
+    @Test
+    void allowsTheBurstThenRejects() {
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(LoginThrottle.tryAcquire(bucket, limit, now)).isZero();
+        }
+
+        assertThat(LoginThrottle.tryAcquire(bucket, limit, now)).isEqualTo(10 * SECOND);
+    }
+
+    @Test
+    void refillsOneAttemptPerInterval() {
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 3; i++) LoginThrottle.tryAcquire(bucket, limit, now);
+
+        assertThat(LoginThrottle.tryAcquire(bucket, limit, now + 9 * SECOND)).isEqualTo(SECOND);
+        assertThat(LoginThrottle.tryAcquire(bucket, limit, now + 10 * SECOND)).isZero();
+        assertThat(LoginThrottle.tryAcquire(bucket, limit, now + 10 * SECOND)).isPositive();
+        // Idle long enough and the whole burst is back, but never more than the burst
+        long later = now + 10 * 60 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(LoginThrottle.tryAcquire(bucket, limit, later)).isZero();
+        }
+        assertThat(LoginThrottle.tryAcquire(bucket, limit, later)).isPositive();
+    }
+
+    // A rejected attempt does not push the next allowed one further out
+    @Test
+    void rejectionsDoNotConsume() {
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 3; i++) LoginThrottle.tryAcquire(bucket, limit, now);
+        for (int i = 0; i < 100; i++) LoginThrottle.tryAcquire(bucket, limit, now + SECOND);
+
+        assertThat(LoginThrottle.tryAcquire(bucket, limit, now + 10 * SECOND)).isZero();
+    }
+
+    @Test
+    void limitsAccountsAcrossCaseAndAddresses() {
+        LoginThrottle throttle = throttle(true);
+        throttle.check("Jane@Example.com", "10.0.0.1");
+        throttle.check("jane@example.com", "10.0.0.2");
+
+        assertThatThrownBy(() -> throttle.check(" JANE@example.com", "10.0.0.3"))
+                .isInstanceOf(LoginThrottledException.class)
+                .satisfies(e -> assertThat(((LoginThrottledException) e).getRetryAfter()).isPositive());
+        assertThatCode(() -> throttle.check("bob@example.com", "10.0.0.3")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void limitsAddressesAcrossAccounts() {
+        LoginThrottle throttle = throttle(true);
+        for (int i = 0; i < 4; i++) throttle.check("user" + i, "10.0.0.1");
+
+        assertThatThrownBy(() -> throttle.check("user9", "10.0.0.1")).isInstanceOf(LoginThrottledException.class);
+        assertThatCode(() -> throttle.check("user9", "10.0.0.2")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void disabledThrottleAllowsEverything() {
+        LoginThrottle throttle = throttle(false);
+
+        assertThatCode(() -> {
+            for (int i = 0; i < 100; i++) throttle.check("jane", "10.0.0.1");
+        }).doesNotThrowAnyException();
+    }
+
+    // Account: burst 2, IP: burst 4; both refill once a minute
+    private static LoginThrottle throttle(boolean enabled) {
+        return new LoginThrottle(new SimpleMeterRegistry(), enabled, 2, 1, 4, 1, 1000, Duration.ofMinutes(15));
+    }
+}
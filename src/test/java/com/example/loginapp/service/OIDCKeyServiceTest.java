@@ -0,0 +1,205 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SSOConfigSnapshot;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.BadJWTException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OIDCKeyServiceTest {
+
+    private static final String ISSUER = "https://idp.example.com";
+    private static final String DISCOVERY_URL = ISSUER + "/.well-known/openid-configuration";
+    private static final String JWKS_URL = ISSUER + "/jwks";
+    private static final String NONCE = "n-0S6_WzA2Mj";
+
+    private static RSAKey key1;
+    private static RSAKey key2;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeIdp idp = new FakeIdp();
+    private final SSOConfigSnapshot config = new SSOConfigSnapshot(1, 1L, false, false, true,
+            null, null, null, null, null, null, null, null,
+            ISSUER + "/authorize", ISSUER + "/token", ISSUER + "/userinfo", "client", "secret",
+            "https://sp.example.com/sso/oauth/callback", DISCOVERY_URL);
+
+    @BeforeAll
+    static void keys() throws Exception {
+        key1 = new RSAKeyGenerator(2048).keyID("k1").generate();
+        key2 = new RSAKeyGenerator(2048).keyID("k2").generate();
+    }
+
+    @Test
+    void validatesAgainstCachedKeys() throws Exception {
+        OIDCKeyService service = service(Duration.ofSeconds(30));
+
+        assertThat(validate(service, token(key1, NONCE)).getSubject()).isEqualTo("jane");
+        assertThat(validate(service, token(key1, NONCE)).getSubject()).isEqualTo("jane");
+
+        assertThat(idp.requests).containsExactly(DISCOVERY_URL, JWKS_URL);
+    }
+
+    @Test
+    void rejectsTokenForAnotherLogin() throws Exception {
+        OIDCKeyService service = service(Duration.ofSeconds(30));
+
+        assertRejected(service, token(key1, "another-nonce"));
+        assertRejected(service, token(key1, null));
+    }
+
+    // Unknown kid: one conditional refresh (ETag -> 304), then no more fetches within the interval
+    @Test
+    void rateLimitsRefreshesForUnknownKeys() throws Exception {
+        OIDCKeyService service = service(Duration.ofSeconds(30));
+        validate(service, token(key1, NONCE));
+
+        assertRejected(service, token(key2, NONCE));
+        assertThat(idp.requests).containsExactly(DISCOVERY_URL, JWKS_URL, DISCOVERY_URL, JWKS_URL);
+        assertThat(idp.ifNoneMatch).containsExactly(null, null, "\"d1\"", "\"j1\"");
+        assertThat(count("not_modified")).isEqualTo(1);
+
+        for (int i = 0; i < 5; i++) assertRejected(service, token(key2, NONCE));
+        assertThat(idp.requests).hasSize(4);
+        assertThat(count("rate_limited")).isEqualTo(5);
+    }
+
+    @Test
+    void picksUpRotatedKey() throws Exception {
+        OIDCKeyService service = service(Duration.ofSeconds(30));
+        validate(service, token(key1, NONCE));
+
+        idp.publish("\"j2\"", key1, key2);
+
+        assertThat(validate(service, token(key2, NONCE)).getSubject()).isEqualTo("jane");
+        assertThat(count("updated")).isEqualTo(2);
+        // The new keys are cached: no further fetches
+        validate(service, token(key2, NONCE));
+        assertThat(idp.requests).hasSize(4);
+    }
+
+    // A failed load is kept for the interval instead of hitting the IdP on every callback, then retried
+    @Test
+    void backsOffAfterFailedLoad() throws Exception {
+        OIDCKeyService service = service(Duration.ofMillis(200));
+        idp.down = true;
+
+        assertThatThrownBy(() -> validate(service, token(key1, NONCE))).hasRootCauseInstanceOf(SSOHttpException.class);
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> validate(service, token(key1, NONCE))).hasRootCauseInstanceOf(SSOHttpException.class);
+        }
+        assertThat(idp.requests).containsExactly(DISCOVERY_URL);
+        assertThat(count("backoff")).isEqualTo(5);
+        assertThat(count("failed")).isEqualTo(1);
+
+        idp.down = false;
+        Thread.sleep(300);
+        assertThat(validate(service, token(key1, NONCE)).getSubject()).isEqualTo("jane");
+        assertThat(idp.requests).containsExactly(DISCOVERY_URL, DISCOVERY_URL, JWKS_URL);
+    }
+
+    private OIDCKeyService service(Duration unknownKidRefreshInterval) {
+        return new OIDCKeyService(idp, null, meterRegistry, unknownKidRefreshInterval);
+    }
+
+    private JWTClaimsSet validate(OIDCKeyService service, String idToken) {
+        return service.validateIdToken(config, idToken, NONCE).join();
+    }
+
+    private void assertRejected(OIDCKeyService service, String idToken) {
+        assertThatThrownBy(() -> validate(service, idToken))
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(BadJWTException.class);
+    }
+
+    private double count(String result) {
+        Counter counter = meterRegistry.find("sso.oidc.keys.refresh").tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static String token(RSAKey key, String nonce) throws Exception {
+        Date now = new Date();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .issuer(ISSUER)
+                        .audience("client")
+                        .subject("jane")
+                        .claim("nonce", nonce)
+                        .issueTime(now)
+                        .expirationTime(new Date(now.getTime() + 60_000))
+                        .build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    /**
+     * Discovery document and JWKS with ETags, answered in-process; records every request.
+     */
+    private static final class FakeIdp extends SSOHttpClient {
+
+        final List<String> requests = new ArrayList<>();
+        final List<String> ifNoneMatch = new ArrayList<>();
+        volatile boolean down;
+        private String jwksEtag = "\"j1\"";
+        private String jwks = new JWKSet(key1.toPublicJWK()).toString();
+
+        FakeIdp() {
+            super(null, null, null, Duration.ofSeconds(8));
+        }
+
+        void publish(String etag, RSAKey... keys) {
+            jwksEtag = etag;
+            jwks = new JWKSet(List.of(keys)).toPublicJWKSet().toString();
+        }
+
+        @Override
+        public CompletableFuture<SimpleHttpResponse> exchangeAsync(SimpleHttpRequest request) {
+            String url = uri(request);
+            Header condition = request.getFirstHeader("If-None-Match");
+            requests.add(url);
+            ifNoneMatch.add(condition == null ? null : condition.getValue());
+            if (down) return CompletableFuture.completedFuture(SimpleHttpResponse.create(503));
+
+            String etag = url.equals(DISCOVERY_URL) ? "\"d1\"" : jwksEtag;
+            if (condition != null && condition.getValue().equals(etag)) {
+                return CompletableFuture.completedFuture(SimpleHttpResponse.create(304));
+            }
+            String body = url.equals(DISCOVERY_URL)
+                    ? "{\"issuer\":\"" + ISSUER + "\",\"jwks_uri\":\"" + JWKS_URL + "\"}"
+                    : jwks;
+            SimpleHttpResponse response = SimpleHttpResponse.create(200, body, ContentType.APPLICATION_JSON);
+            response.addHeader("ETag", etag);
+            return CompletableFuture.completedFuture(response);
+        }
+
+        private static String uri(SimpleHttpRequest request) {
+            try {
+                return request.getUri().toString();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.loginapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryStatisticsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final QueryStatistics statistics = new QueryStatistics(meterRegistry, Duration.ofMillis(200), 3);
+
+    @Test
+    void ordersByWorstExecutionTime() {
+        statistics.record("select 1", "[]", millis(5));
+        statistics.record("select 2", "[]", millis(50));
+        statistics.record("select 3", "[]", millis(20));
+        statistics.record("select 1", "[Long]", millis(80));
+
+        assertThat(statistics.slowest(2))
+                .extracting(QueryStatistics.Summary::sql)
+                .containsExactly("select 1", "select 2");
+    }
+
+    @Test
+    void keepsCountTotalAndParametersOfTheWorstRun() {
+        statistics.record("select * from users where id = ?", "[Long]", millis(10));
+        statistics.record("select * from users where id = ?", "[null]", millis(30));
+        statistics.record("select * from users where id = ?", "[Long]", millis(20));
+
+        QueryStatistics.Summary summary = statistics.slowest(1).get(0);
+        assertThat(summary.count()).isEqualTo(3);
+        assertThat(summary.totalMs()).isEqualTo(60.0);
+        assertThat(summary.avgMs()).isEqualTo(20.0);
+        assertThat(summary.maxMs()).isEqualTo(30.0);
+        assertThat(summary.slowestParameters()).isEqualTo("[null]");
+    }
+
+    @Test
+    void stopsTrackingNewStatementsAtTheCap() {
+        for (int i = 0; i < 5; i++) {
+            statistics.record("select " + i, "[]", millis(1));
+        }
+
+        assertThat(statistics.slowest(10)).hasSize(3);
+        // Untracked statements are still timed
+        assertThat(meterRegistry.get("db.query").tag("kind", "select").timer().count()).isEqualTo(5);
+    }
+
+    @Test
+    void countsStatementsOverTheSlowThreshold() {
+        statistics.record("update users set name = ?", "[String]", millis(199));
+        statistics.record("update users set name = ?", "[String]", millis(200));
+
+        assertThat(meterRegistry.get("db.query.slow").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("db.query").tag("kind", "update").timer().count()).isEqualTo(2);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
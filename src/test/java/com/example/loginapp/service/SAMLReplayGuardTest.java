@@ -0,0 +1,78 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SAMLAssertion;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SAMLReplayGuardTest {
+
+    private final SAMLReplayGuard guard =
+            new SAMLReplayGuard(Duration.ofSeconds(60), 1000, true);
+
+    @Test
+    void acceptsIdpInitiatedAssertionOnce() {
+        SAMLAssertion assertion = assertion("_a1", null, Instant.now().plusSeconds(300));
+
+        assertThatCode(() -> guard.accept(assertion, null)).doesNotThrowAnyException();
+        assertRejected(assertion, null, "already been used");
+    }
+
+    @Test
+    void rejectsReplayUnderAnotherResponse() {
+        guard.accept(assertion("_a1", null, Instant.now().plusSeconds(300)), null);
+
+        assertRejected(assertion("_a1", "_req1", Instant.now().plusSeconds(300)), "_req1", "already been used");
+    }
+
+    @Test
+    void acceptsAnswerToTheRequestThisBrowserStarted() {
+        assertThatCode(() -> guard.accept(assertion("_a1", "_req1", Instant.now().plusSeconds(300)), "_req1"))
+                .doesNotThrowAnyException();
+    }
+
+    // Unsolicited: answers a request this browser did not start (another user's, or none at all)
+    @Test
+    void rejectsAnotherInResponseTo() {
+        assertRejected(assertion("_a1", "_req2", Instant.now().plusSeconds(300)), "_req1",
+                "does not match the request");
+        assertRejected(assertion("_a2", "_never-sent", Instant.now().plusSeconds(300)), null,
+                "does not match the request");
+    }
+
+    @Test
+    void ignoresInResponseToWhenCheckIsOff() {
+        SAMLReplayGuard lenient = new SAMLReplayGuard(Duration.ofSeconds(60), 1000, false);
+
+        assertThatCode(() -> lenient.accept(assertion("_a1", "_never-sent", Instant.now().plusSeconds(300)), null))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsAssertionWithoutNotOnOrAfter() {
+        assertRejected(assertion("_a1", null, null), null, "no NotOnOrAfter");
+    }
+
+    @Test
+    void rejectsAssertionWithoutId() {
+        assertRejected(assertion(null, null, Instant.now().plusSeconds(300)), null, "no ID");
+    }
+
+    private void assertRejected(SAMLAssertion assertion, String requestId, String reason) {
+        assertThatThrownBy(() -> guard.accept(assertion, requestId))
+                .isInstanceOf(SAMLResponseException.class)
+                .hasMessageContaining(reason);
+    }
+
+    private static SAMLAssertion assertion(String id, String inResponseTo, Instant notOnOrAfter) {
+        return new SAMLAssertion("_r1", inResponseTo, "https://sp.example.com/sso/saml/callback",
+                SAMLAssertion.STATUS_SUCCESS, id, "https://idp.example.com", "jane@example.com", null, true,
+                Instant.now().minusSeconds(10), notOnOrAfter, List.of(), Map.of());
+    }
+}
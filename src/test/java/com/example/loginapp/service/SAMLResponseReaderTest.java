@@ -0,0 +1,149 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SAMLAssertion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SAMLResponseReaderTest {
+
+    private static final String ASSERTION = """
+            <saml:Assertion xmlns:saml="urn:oasis:names:tc:SAML:2.0:assertion" ID="_a1">
+              <saml:Issuer>https://idp.example.com</saml:Issuer>
+              <saml:Subject>
+                <saml:NameID Format="urn:oasis:names:tc:SAML:1.1:nameid-format:emailAddress">%s</saml:NameID>
+              </saml:Subject>
+              <saml:Conditions NotBefore="2026-01-01T00:00:00Z" NotOnOrAfter="2026-01-01T00:05:00Z">
+                <saml:AudienceRestriction><saml:Audience>https://sp.example.com/sso/saml/metadata</saml:Audience></saml:AudienceRestriction>
+              </saml:Conditions>
+              <saml:AttributeStatement>
+                <saml:Attribute Name="groups">
+                  <saml:AttributeValue>admins</saml:AttributeValue>
+                  <saml:AttributeValue>users</saml:AttributeValue>
+                </saml:Attribute>
+              </saml:AttributeStatement>
+            </saml:Assertion>
+            """;
+
+    @Test
+    void readsTheFirstAssertion() {
+        SAMLAssertion assertion = SAMLResponseReader.read(base64(response(ASSERTION.formatted("jane@example.com"))));
+
+        assertThat(assertion.responseId()).isEqualTo("_r1");
+        assertThat(assertion.inResponseTo()).isEqualTo("_req1");
+        assertThat(assertion.destination()).isEqualTo("https://sp.example.com/sso/saml/callback");
+        assertThat(assertion.isSuccess()).isTrue();
+        assertThat(assertion.assertionId()).isEqualTo("_a1");
+        assertThat(assertion.issuer()).isEqualTo("https://idp.example.com");
+        assertThat(assertion.nameId()).isEqualTo("jane@example.com");
+        assertThat(assertion.notBefore()).isEqualTo(Instant.parse("2026-01-01T00:00:00Z"));
+        assertThat(assertion.notOnOrAfter()).isEqualTo(Instant.parse("2026-01-01T00:05:00Z"));
+        assertThat(assertion.audiences()).containsExactly("https://sp.example.com/sso/saml/metadata");
+        assertThat(assertion.attributes()).containsEntry("groups", List.of("admins", "users"));
+        assertThat(assertion.signed()).isFalse();
+    }
+
+    // Matched by namespace, not prefix
+    @Test
+    void acceptsAnyPrefix() {
+        String xml = response(ASSERTION.formatted("jane@example.com").replace("saml:", "a:").replace("xmlns:saml", "xmlns:a"))
+                .replace("samlp:", "p:").replace("xmlns:samlp", "xmlns:p");
+
+        assertThat(SAMLResponseReader.read(bytes(xml)).nameId()).isEqualTo("jane@example.com");
+    }
+
+    // Wrapping: a second (injected) assertion must not replace the first one's subject
+    @Test
+    void ignoresLaterAssertions() {
+        String xml = response(ASSERTION.formatted("jane@example.com")
+                + ASSERTION.formatted("admin@example.com").replace("_a1", "_a2"));
+
+        SAMLAssertion assertion = SAMLResponseReader.read(bytes(xml));
+
+        assertThat(assertion.assertionId()).isEqualTo("_a1");
+        assertThat(assertion.nameId()).isEqualTo("jane@example.com");
+    }
+
+    @Test
+    void rejectsExternalEntity(@TempDir Path dir) throws Exception {
+        Path secret = Files.writeString(dir.resolve("secret.txt"), "top-secret");
+        String xml = "<!DOCTYPE r [<!ENTITY xxe SYSTEM \"" + secret.toUri() + "\">]>"
+                + response(ASSERTION.formatted("&xxe;"));
+
+        assertThatThrownBy(() -> SAMLResponseReader.read(bytes(xml)))
+                .isInstanceOf(SAMLResponseException.class)
+                .hasMessageNotContaining("top-secret");
+    }
+
+    @Test
+    void rejectsInternalEntityExpansion() {
+        String xml = """
+                <!DOCTYPE r [
+                  <!ENTITY a "aaaaaaaaaa">
+                  <!ENTITY b "&a;&a;&a;&a;&a;&a;&a;&a;&a;&a;">
+                  <!ENTITY c "&b;&b;&b;&b;&b;&b;&b;&b;&b;&b;">
+                ]>""" + response(ASSERTION.formatted("&c;"));
+
+        assertThatThrownBy(() -> SAMLResponseReader.read(bytes(xml))).isInstanceOf(SAMLResponseException.class);
+    }
+
+    @Test
+    void rejectsDoctypeWithoutEntities() {
+        String xml = "<!DOCTYPE samlp:Response>" + response(ASSERTION.formatted("jane@example.com"));
+
+        assertThatThrownBy(() -> SAMLResponseReader.read(bytes(xml))).isInstanceOf(SAMLResponseException.class);
+    }
+
+    @Test
+    void rejectsEncryptedAssertion() {
+        String xml = response("<saml:EncryptedAssertion xmlns:saml=\"urn:oasis:names:tc:SAML:2.0:assertion\"/>");
+
+        assertThatThrownBy(() -> SAMLResponseReader.read(bytes(xml)))
+                .isInstanceOf(SAMLResponseException.class)
+                .hasMessageContaining("Encrypted");
+    }
+
+    @Test
+    void rejectsResponseWithoutAssertion() {
+        assertThatThrownBy(() -> SAMLResponseReader.read(bytes(response(""))))
+                .isInstanceOf(SAMLResponseException.class)
+                .hasMessageContaining("no assertion");
+    }
+
+    @Test
+    void rejectsInvalidBase64AndMalformedXml() {
+        assertThatThrownBy(() -> SAMLResponseReader.read("not base64!"))
+                .isInstanceOf(SAMLResponseException.class)
+                .hasMessageContaining("Base64");
+        assertThatThrownBy(() -> SAMLResponseReader.read(bytes("<samlp:Response")))
+                .isInstanceOf(SAMLResponseException.class)
+                .hasMessageContaining("Malformed");
+    }
+
+    private static String response(String assertions) {
+        return """
+                <samlp:Response xmlns:samlp="urn:oasis:names:tc:SAML:2.0:protocol" ID="_r1" InResponseTo="_req1"
+                                Destination="https://sp.example.com/sso/saml/callback">
+                  <samlp:Status><samlp:StatusCode Value="urn:oasis:names:tc:SAML:2.0:status:Success"/></samlp:Status>
+                  %s
+                </samlp:Response>
+                """.formatted(assertions);
+    }
+
+    private static byte[] bytes(String xml) {
+        return xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String base64(String xml) {
+        return Base64.getEncoder().encodeToString(bytes(xml));
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.SAMLAssertion;
+import com.example.loginapp.model.SSOConfig;
+import com.example.loginapp.model.SSOConfigSnapshot;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignatureMethod;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Signature checks of {@link SAMLSignatureVerifier}, in particular the signature-wrapping cases:
+ * a signature that is valid on its own must not vouch for an assertion it does not cover.
+ */
+class SAMLSignatureVerifierTest {
+
+    private static final String PROTOCOL_NS = "urn:oasis:names:tc:SAML:2.0:protocol";
+    private static final String ASSERTION_NS = "urn:oasis:names:tc:SAML:2.0:assertion";
+    private static final String DSIG_NS = "http://www.w3.org/2000/09/xmldsig#";
+
+    private static KeyPair idpKeys;
+    private static KeyPair otherKeys;
+    private static SSOConfigSnapshot config;
+
+    private final SAMLSignatureVerifier verifier = new SAMLSignatureVerifier();
+
+    @BeforeAll
+    static void keys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        idpKeys = generator.generateKeyPair();
+        otherKeys = generator.generateKeyPair();
+
+        SSOConfig entity = new SSOConfig();
+        entity.setId(1L);
+        entity.setSamlEnabled(true);
+        entity.setSamlCertificate("-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder().encodeToString(idpKeys.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----\n");
+        config = SSOConfigSnapshot.of(1, entity);
+    }
+
+    @Test
+    void acceptsSignedAssertion() throws Exception {
+        Document document = response("jane@example.com");
+        sign(document, "_a1", idpKeys.getPrivate(), assertion(document));
+
+        assertThat(verify(document).nameId()).isEqualTo("jane@example.com");
+    }
+
+    @Test
+    void acceptsSignedResponse() throws Exception {
+        Document document = response("jane@example.com");
+        sign(document, "_r1", idpKeys.getPrivate(), document.getDocumentElement());
+
+        assertThat(verify(document).nameId()).isEqualTo("jane@example.com");
+    }
+
+    @Test
+    void rejectsAssertionChangedAfterSigning() throws Exception {
+        Document document = response("jane@example.com");
+        sign(document, "_a1", idpKeys.getPrivate(), assertion(document));
+        document.getElementsByTagNameNS(ASSERTION_NS, "NameID").item(0).setTextContent("admin@example.com");
+
+        assertRejected(document, "signature is invalid");
+    }
+
+    @Test
+    void rejectsSignatureFromAnotherKey() throws Exception {
+        Document document = response("jane@example.com");
+        sign(document, "_a1", otherKeys.getPrivate(), assertion(document));
+
+        assertRejected(document, "signature is invalid");
+    }
+
+    @Test
+    void rejectsUnsignedResponse() throws Exception {
+        assertRejected(response("jane@example.com"), "not signed");
+    }
+
+    // Wrapping: the genuinely signed assertion is kept, an unsigned forged one is placed first for the reader
+    @Test
+    void rejectsSecondAssertion() throws Exception {
+        Document document = response("jane@example.com");
+        Element signed = assertion(document);
+        sign(document, "_a1", idpKeys.getPrivate(), signed);
+
+        Element forged = (Element) signed.cloneNode(true);
+        forged.setAttribute("ID", "_forged");
+        forged.removeChild(forged.getElementsByTagNameNS(DSIG_NS, "Signature").item(0));
+        forged.getElementsByTagNameNS(ASSERTION_NS, "NameID").item(0).setTextContent("admin@example.com");
+        document.getDocumentElement().insertBefore(forged, signed);
+
+        assertRejected(document, "exactly one assertion");
+    }
+
+    // Wrapping: a valid signature inside the assertion whose reference covers a different element
+    @Test
+    void rejectsReferenceToAnotherId() throws Exception {
+        Document document = response("jane@example.com");
+        // Signs the whole Response, but the Signature is placed in the assertion, as if it were the assertion's
+        sign(document, "_r1", idpKeys.getPrivate(), assertion(document));
+
+        assertRejected(document, "must reference the signed element");
+    }
+
+    // Wrapping: something else in the document is signed (an Extensions element), the assertion is not
+    @Test
+    void rejectsUnsignedAssertionUnderSignatureOnAnotherElement() throws Exception {
+        Document document = response("jane@example.com");
+        Element extensions = extensions(document);
+        sign(document, "_ext", idpKeys.getPrivate(), extensions);
+
+        assertRejected(document, "not signed");
+    }
+
+    // Wrapping: a Response-level signature that covers only another element
+    @Test
+    void rejectsResponseSignatureOverAnotherElement() throws Exception {
+        Document document = response("jane@example.com");
+        extensions(document);
+        sign(document, "_ext", idpKeys.getPrivate(), document.getDocumentElement());
+
+        assertRejected(document, "must reference the signed element");
+    }
+
+    private SAMLAssertion verify(Document document) throws Exception {
+        byte[] xml = serialize(document);
+        SAMLAssertion assertion = SAMLResponseReader.read(xml);
+        verifier.verify(config, xml, assertion);
+        return assertion;
+    }
+
+    private void assertRejected(Document document, String reason) {
+        assertThatThrownBy(() -> verify(document))
+                .isInstanceOf(SAMLResponseException.class)
+                .hasMessageContaining(reason);
+    }
+
+    private static Document response(String nameId) throws Exception {
+        String xml = """
+                <samlp:Response xmlns:samlp="%s" xmlns:saml="%s" ID="_r1" Version="2.0"
+                    IssueInstant="2030-01-01T00:00:00Z" Destination="https://sp.example.com/sso/saml/callback">
+                  <saml:Issuer>https://idp.example.com</saml:Issuer>
+                  <samlp:Status><samlp:StatusCode Value="urn:oasis:names:tc:SAML:2.0:status:Success"/></samlp:Status>
+                  <saml:Assertion ID="_a1" Version="2.0" IssueInstant="2030-01-01T00:00:00Z">
+                    <saml:Issuer>https://idp.example.com</saml:Issuer>
+                    <saml:Subject><saml:NameID>%s</saml:NameID></saml:Subject>
+                    <saml:Conditions NotBefore="2030-01-01T00:00:00Z" NotOnOrAfter="2030-01-01T00:05:00Z">
+                      <saml:AudienceRestriction><saml:Audience>https://sp.example.com/sso/saml/metadata</saml:Audience></saml:AudienceRestriction>
+                    </saml:Conditions>
+                  </saml:Assertion>
+                </samlp:Response>
+                """.formatted(PROTOCOL_NS, ASSERTION_NS, nameId);
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Element assertion(Document document) {
+        return (Element) document.getElementsByTagNameNS(ASSERTION_NS, "Assertion").item(0);
+    }
+
+    // <samlp:Extensions ID="_ext"> right after the Response's Issuer
+    private static Element extensions(Document document) {
+        Element extensions = document.createElementNS(PROTOCOL_NS, "samlp:Extensions");
+        extensions.setAttribute("ID", "_ext");
+        extensions.appendChild(document.createElementNS("urn:example", "x:Note")).setTextContent("hello");
+        Element response = document.getDocumentElement();
+        Node issuer = response.getElementsByTagNameNS(ASSERTION_NS, "Issuer").item(0);
+        response.insertBefore(extensions, issuer.getNextSibling());
+        return extensions;
+    }
+
+    // Enveloped RSA-SHA256 signature over the element with ID referenceId, placed in parent after its first child
+    private static void sign(Document document, String referenceId, PrivateKey key, Element parent) throws Exception {
+        NodeList elements = document.getElementsByTagNameNS("*", "*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            if (referenceId.equals(element.getAttribute("ID"))) element.setIdAttributeNS(null, "ID", true);
+        }
+
+        XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM");
+        Reference reference = factory.newReference("#" + referenceId,
+                factory.newDigestMethod(DigestMethod.SHA256, null),
+                List.of(factory.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null),
+                        factory.newTransform(CanonicalizationMethod.EXCLUSIVE, (TransformParameterSpec) null)),
+                null, null);
+        SignedInfo signedInfo = factory.newSignedInfo(
+                factory.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (C14NMethodParameterSpec) null),
+                factory.newSignatureMethod(SignatureMethod.RSA_SHA256, null),
+                List.of(reference));
+
+        Node after = firstChildElement(parent);
+        Node nextSibling = after == null ? null : after.getNextSibling();
+        DOMSignContext context = nextSibling == null
+                ? new DOMSignContext(key, parent)
+                : new DOMSignContext(key, parent, nextSibling);
+        context.setDefaultNamespacePrefix("ds");
+        factory.newXMLSignature(signedInfo, null).sign(context);
+    }
+
+    private static Node firstChildElement(Element parent) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element) return node;
+        }
+        return null;
+    }
+
+    private static byte[] serialize(Document document) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(out));
+        return out.toByteArray();
+    }
+}
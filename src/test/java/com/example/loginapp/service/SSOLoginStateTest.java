@@ -0,0 +1,87 @@
+package com.example.loginapp.service;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SSOLoginStateTest {
+
+    private final SSOLoginState loginState = new SSOLoginState(Duration.ofMinutes(10));
+
+    @Test
+    void returnsTheNonceForTheStateThisBrowserStarted() {
+        MockHttpServletResponse redirect = new MockHttpServletResponse();
+        SSOLoginState.OAuthRequest started = loginState.startOAuth(new MockHttpServletRequest(), redirect);
+
+        MockHttpServletResponse callback = new MockHttpServletResponse();
+        assertThat(loginState.finishOAuth(returning(redirect), callback, started.state())).isEqualTo(started.nonce());
+        // Single use: the cookie is cleared
+        assertThat(callback.getHeader("Set-Cookie")).startsWith(SSOLoginState.OAUTH_COOKIE + "=;").contains("Max-Age=0");
+    }
+
+    @Test
+    void rejectsAnotherState() {
+        MockHttpServletResponse redirect = new MockHttpServletResponse();
+        loginState.startOAuth(new MockHttpServletRequest(), redirect);
+
+        assertThat(loginState.finishOAuth(returning(redirect), new MockHttpServletResponse(), "attacker-state")).isNull();
+        assertThat(loginState.finishOAuth(returning(redirect), new MockHttpServletResponse(), null)).isNull();
+    }
+
+    // Login CSRF: the attacker's callback URL opened in a browser that never started a login
+    @Test
+    void rejectsCallbackWithoutCookie() {
+        SSOLoginState.OAuthRequest attackers = loginState.startOAuth(new MockHttpServletRequest(),
+                new MockHttpServletResponse());
+
+        assertThat(loginState.finishOAuth(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                attackers.state())).isNull();
+    }
+
+    @Test
+    void issuesDistinctValuesPerLogin() {
+        SSOLoginState.OAuthRequest first = loginState.startOAuth(new MockHttpServletRequest(), new MockHttpServletResponse());
+        SSOLoginState.OAuthRequest second = loginState.startOAuth(new MockHttpServletRequest(), new MockHttpServletResponse());
+
+        assertThat(first.state()).isNotEqualTo(second.state()).isNotEqualTo(first.nonce());
+        assertThat(first.nonce()).isNotEqualTo(second.nonce());
+    }
+
+    @Test
+    void cookieIsHttpOnlyAndScopedToSso() {
+        MockHttpServletResponse redirect = new MockHttpServletResponse();
+        loginState.startOAuth(new MockHttpServletRequest(), redirect);
+
+        assertThat(redirect.getHeader("Set-Cookie"))
+                .contains("Path=/sso", "Max-Age=600", "HttpOnly", "SameSite=Lax");
+    }
+
+    // The browser sending back what the redirect set
+    @Test
+    void returnsTheSamlRequestIdOnce() {
+        MockHttpServletRequest login = new MockHttpServletRequest();
+        login.setSecure(true);
+        MockHttpServletResponse redirect = new MockHttpServletResponse();
+        loginState.startSaml(login, redirect, "_req1");
+        // The IdP POSTs back cross-site: only a SameSite=None cookie comes with it
+        assertThat(redirect.getHeader("Set-Cookie")).contains("SameSite=None").contains("Secure");
+
+        MockHttpServletResponse callback = new MockHttpServletResponse();
+        assertThat(loginState.finishSaml(returning(redirect), callback)).isEqualTo("_req1");
+        assertThat(callback.getHeader("Set-Cookie")).startsWith(SSOLoginState.SAML_COOKIE + "=;").contains("Max-Age=0");
+        assertThat(loginState.finishSaml(new MockHttpServletRequest(), new MockHttpServletResponse())).isNull();
+    }
+
+    private static MockHttpServletRequest returning(MockHttpServletResponse redirect) {
+        String header = redirect.getHeader("Set-Cookie");
+        String pair = header.substring(0, header.indexOf(';'));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(pair.substring(0, pair.indexOf('=')), pair.substring(pair.indexOf('=') + 1)));
+        return request;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.User;
+import com.example.loginapp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the provisioning upsert against a real Postgres: it relies on ON CONFLICT, LATERAL and
+ * {@code xmax}, none of which H2 has.
+ */
+class SSOUserProvisionerTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    private UserIdentityBackfill backfill;
+    private SSOUserProvisioner provisioner;
+
+    @BeforeAll
+    static void startPostgres() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        dataSource = postgres.getPostgresDatabase();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws Exception {
+        postgres.close();
+    }
+
+    // The schema Hibernate creates from User (no index on email_normalized: the backfill builds it)
+    @BeforeEach
+    void createSchema() {
+        jdbc.execute("DROP TABLE IF EXISTS users");
+        jdbc.execute("DROP SEQUENCE IF EXISTS users_seq");
+        jdbc.execute("CREATE SEQUENCE users_seq INCREMENT BY 50");
+        jdbc.execute("""
+                CREATE TABLE users (id bigint PRIMARY KEY, username varchar(255) NOT NULL UNIQUE,
+                                    email varchar(255) NOT NULL UNIQUE, password varchar(255) NOT NULL,
+                                    name varchar(255) NOT NULL, role varchar(255) NOT NULL,
+                                    username_normalized varchar(255), email_normalized varchar(255),
+                                    created_at timestamp(6) with time zone)
+                """);
+        jdbc.execute("CREATE INDEX ix_users_email_normalized ON users (email_normalized)");
+
+        backfill = new UserIdentityBackfill(jdbc, 2);
+        UserLookupCache cache = new UserLookupCache(emptyRepository(), backfill,
+                new ReadYourWrites(Duration.ofSeconds(10), 100), new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        provisioner = new SSOUserProvisioner(new NamedParameterJdbcTemplate(dataSource), cache, backfill,
+                new UserCountCache(null, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void concurrentFirstLoginsInMixedCaseCreateOneAccount() throws Exception {
+        backfill.run();
+        assertThat(backfill.isEmailUnique()).isTrue();
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<User>> logins = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String email = i % 2 == 0 ? "bob@example.com" : "Bob@Example.COM";
+            logins.add(pool.submit(() -> {
+                start.await();
+                return provisioner.provision(email, "Bob");
+            }));
+        }
+        start.countDown();
+
+        Long id = logins.get(0).get().getId();
+        for (Future<User> login : logins) assertThat(login.get().getId()).isEqualTo(id);
+        pool.shutdown();
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM users", Long.class)).isOne();
+    }
+
+    @Test
+    void takenUsernameGetsTheIdAppended() {
+        backfill.run();
+        insert(1, "carol@example.com", "other@example.com");
+
+        User carol = provisioner.provision("Carol@example.com", "Carol");
+
+        assertThat(carol.getEmail()).isEqualTo("Carol@example.com");
+        assertThat(carol.getUsername()).isEqualTo("Carol@example.com#" + carol.getId());
+    }
+
+    @Test
+    void unverifiedEmailIsNotLinkedToAnExistingAccount() {
+        backfill.run();
+        insert(1, "admin", "admin@example.com");
+
+        assertThatThrownBy(() -> provisioner.provision("ADMIN@example.com", "Mallory", false))
+                .isInstanceOf(UnverifiedEmailException.class);
+        assertThat(provisioner.provision("ADMIN@example.com", "Admin", true).getId()).isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM users", Long.class)).isOne();
+    }
+
+    @Test
+    void unverifiedEmailStillGetsANewAccount() {
+        backfill.run();
+
+        User user = provisioner.provision("new@example.com", "  ", false);
+
+        assertThat(user.getUsername()).isEqualTo("new@example.com");
+        assertThat(user.getName()).isEqualTo("SSO User");
+        assertThat(user.getPassword()).isEqualTo(UnusablePasswordEncoder.MARKER);
+    }
+
+    @Test
+    void beforeTheBackfillConflictsOnTheRawEmail() {
+        insert(1, "dave", "dave@example.com");
+        jdbc.update("UPDATE users SET username_normalized = NULL, email_normalized = NULL");
+
+        assertThat(backfill.isEmailUnique()).isFalse();
+        assertThat(provisioner.provision("dave@example.com", "Dave").getId()).isEqualTo(1);
+    }
+
+    @Test
+    void backfillMergesCaseDuplicatesAndBuildsTheUniqueIndex() {
+        insert(1, "erin", "Erin@example.com");
+        insert(2, "erin2", "erin@example.com");
+        insert(3, "frank", "frank@example.com");
+        jdbc.update("UPDATE users SET username_normalized = NULL, email_normalized = NULL");
+
+        backfill.run();
+
+        assertThat(backfill.isComplete()).isTrue();
+        assertThat(backfill.isEmailUnique()).isTrue();
+        assertThat(jdbc.queryForList("SELECT email_normalized FROM users ORDER BY id", String.class))
+                .containsExactly("erin@example.com", "erin@example.com#2", "frank@example.com");
+        assertThat(jdbc.queryForList("SELECT indexname FROM pg_indexes WHERE tablename = 'users'", String.class))
+                .contains(UserIdentityBackfill.EMAIL_INDEX)
+                .doesNotContain("ix_users_email_normalized");
+        assertThat(provisioner.provision("ERIN@example.com", "Erin").getId()).isEqualTo(1);
+    }
+
+    @Test
+    void backfillReplacesAnInvalidIndexLeftByAFailedBuild() {
+        insert(1, "gina", "gina@example.com");
+        insert(2, "gina2", "gina2@example.com");
+        jdbc.update("UPDATE users SET email_normalized = 'gina@example.com'");
+        // What CREATE UNIQUE INDEX CONCURRENTLY leaves behind when a duplicate raced in
+        assertThatThrownBy(() -> jdbc.execute("CREATE UNIQUE INDEX CONCURRENTLY "
+                + UserIdentityBackfill.EMAIL_INDEX + " ON users (email_normalized)")).isNotNull();
+
+        backfill.run();
+
+        assertThat(backfill.isEmailUnique()).isTrue();
+        assertThat(jdbc.queryForObject("SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass('"
+                + UserIdentityBackfill.EMAIL_INDEX + "')", Boolean.class)).isTrue();
+    }
+
+    private void insert(long id, String username, String email) {
+        jdbc.update("INSERT INTO users VALUES (?, ?, ?, 'x', 'Existing', 'ADMIN', lower(?), lower(?), now())",
+                id, username, email, username, email);
+    }
+
+    // Lookups always miss, so every provision() goes to the upsert
+    private static UserRepository emptyRepository() {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> method.getReturnType() == Optional.class ? Optional.empty() : null);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.loginapp.service;
+
+import com.example.loginapp.model.LoginPrincipal;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.jwt.SignedJWT;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SignedCookieSecurityContextRepositoryTest {
+
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final LoginPrincipal JANE = new LoginPrincipal(7L, "jane@example.com", "Jane", List.of("ROLE_USER"));
+
+    private final SignedCookieSecurityContextRepository signed = repository(Duration.ofHours(1), false);
+    private final SignedCookieSecurityContextRepository encrypted = repository(Duration.ofHours(1), true);
+
+    @Test
+    void roundTripsThePrincipalInBothModes() {
+        for (SignedCookieSecurityContextRepository repository : List.of(signed, encrypted)) {
+            SecurityContext context = repository.parse(repository.issue(JANE.toAuthentication()));
+
+            assertThat(context).isNotNull();
+            assertThat(context.getAuthentication().getPrincipal()).isEqualTo(JANE);
+            assertThat(context.getAuthentication().getAuthorities()).extracting(Object::toString)
+                    .containsExactly("ROLE_USER");
+        }
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        String[] parts = signed.issue(JANE.toAuthentication()).split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("ROLE_USER", "ROLE_ADMIN");
+        String forged = parts[0] + "." + base64Url(payload) + "." + parts[2];
+
+        assertThat(signed.parse(forged)).isNull();
+    }
+
+    @Test
+    void rejectsTamperedCiphertext() {
+        String[] parts = encrypted.issue(JANE.toAuthentication()).split("\\.");
+        byte[] ciphertext = Base64.getUrlDecoder().decode(parts[3]);
+        ciphertext[0] ^= 1;
+        parts[3] = Base64.getUrlEncoder().withoutPadding().encodeToString(ciphertext);
+
+        assertThat(encrypted.parse(String.join(".", parts))).isNull();
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        SignedCookieSecurityContextRepository expiring = repository(Duration.ofSeconds(-1), false);
+
+        assertThat(expiring.parse(expiring.issue(JANE.toAuthentication()))).isNull();
+    }
+
+    @Test
+    void rejectsUnsignedToken() {
+        String none = new PlainJWT(claims()).serialize();
+
+        assertThat(signed.parse(none)).isNull();
+        assertThat(encrypted.parse(none)).isNull();
+    }
+
+    // alg swap: a valid signature, but not the HS256 one this repository issues
+    @Test
+    void rejectsRs256Token() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims());
+        jwt.sign(new RSASSASigner(generator.generateKeyPair().getPrivate()));
+
+        assertThat(signed.parse(jwt.serialize())).isNull();
+    }
+
+    @Test
+    void rejectsTokenOfTheOtherMode() {
+        assertThat(encrypted.parse(signed.issue(JANE.toAuthentication()))).isNull();
+        assertThat(signed.parse(encrypted.issue(JANE.toAuthentication()))).isNull();
+    }
+
+    @Test
+    void rejectsTokenFromAnotherSecret() {
+        SignedCookieSecurityContextRepository other = new SignedCookieSecurityContextRepository("LOGIN_AUTH",
+                "fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.US_ASCII), Duration.ofHours(1), false);
+
+        assertThat(signed.parse(other.issue(JANE.toAuthentication()))).isNull();
+    }
+
+    @Test
+    void rejectsGarbage() {
+        assertThat(signed.parse("not-a-token")).isNull();
+        assertThat(encrypted.parse("a.b.c.d.e")).isNull();
+    }
+
+    @Test
+    void loadsTheContextFromTheCookie() {
+        MockHttpServletResponse login = new MockHttpServletResponse();
+        signed.saveContext(new SecurityContextImpl(JANE.toAuthentication()), new MockHttpServletRequest(), login);
+        assertThat(login.getHeader("Set-Cookie")).startsWith("LOGIN_AUTH=").contains("HttpOnly", "SameSite=Lax");
+
+        MockHttpServletRequest next = new MockHttpServletRequest();
+        next.setCookies(login.getCookie("LOGIN_AUTH"));
+
+        assertThat(signed.containsContext(next)).isTrue();
+        Authentication authentication = signed.loadDeferredContext(next).get().getAuthentication();
+        assertThat(authentication.getName()).isEqualTo("jane@example.com");
+    }
+
+    @Test
+    void logoutClearsTheCookie() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("LOGIN_AUTH", signed.issue(JANE.toAuthentication())));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        signed.saveContext(new SecurityContextImpl(), request, response);
+
+        assertThat(response.getHeader("Set-Cookie")).startsWith("LOGIN_AUTH=;").contains("Max-Age=0");
+    }
+
+    @Test
+    void anonymousRequestWithoutCookieSetsNothing() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        signed.saveContext(new SecurityContextImpl(), new MockHttpServletRequest(), response);
+
+        assertThat(response.getHeader("Set-Cookie")).isNull();
+        assertThat(signed.loadDeferredContext(new MockHttpServletRequest()).isGenerated()).isTrue();
+    }
+
+    private static SignedCookieSecurityContextRepository repository(Duration ttl, boolean encrypt) {
+        return new SignedCookieSecurityContextRepository("LOGIN_AUTH", SECRET, ttl, encrypt);
+    }
+
+    private static JWTClaimsSet claims() {
+        return new JWTClaimsSet.Builder()
+                .subject("jane@example.com")
+                .claim("uid", 1L)
+                .claim("roles", List.of("ROLE_ADMIN"))
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+    }
+
+    private static String base64Url(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}